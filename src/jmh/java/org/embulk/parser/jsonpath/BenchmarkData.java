@@ -0,0 +1,220 @@
+package org.embulk.parser.jsonpath;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ArrayNode;
+import com.fasterxml.jackson.databind.node.JsonNodeFactory;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import org.embulk.config.ConfigSource;
+import org.embulk.parser.jsonpath.JsonpathParserPlugin.PluginTask;
+import org.embulk.spi.Buffer;
+import org.embulk.spi.BufferAllocator;
+import org.embulk.spi.FileInput;
+import org.embulk.spi.Page;
+import org.embulk.spi.PageBuilder;
+import org.embulk.spi.PageOutput;
+import org.embulk.spi.Schema;
+import org.embulk.spi.util.InputStreamFileInput;
+import org.embulk.util.config.ConfigMapperFactory;
+import org.embulk.util.config.modules.TypeModule;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Synthetic datasets for the benchmarks.
+ *
+ * A record has {@code width} fields, cycling through long, double, string, boolean, timestamp and json values,
+ * and a {@code child} object of the same shape, {@code depth} levels deep.
+ * There is one column for every field at every level.
+ */
+final class BenchmarkData
+{
+    static final String ROOT = "$.data.records";
+    static final String TIMESTAMP = "2024-01-02 03:04:05.123456 +0000";
+
+    private static final String[] TYPES = {"long", "double", "string", "boolean", "timestamp", "json"};
+    private static final ObjectMapper OBJECT_MAPPER = new ObjectMapper();
+    private static final JsonNodeFactory NODES = JsonNodeFactory.instance;
+    private static final ConfigMapperFactory CONFIG_MAPPER_FACTORY = ConfigMapperFactory
+            .builder()
+            .addDefaultModules()
+            .addModule(new TypeModule())
+            .build();
+
+    private BenchmarkData()
+    {
+    }
+
+    static List<JsonNode> records(int count, int width, int depth)
+    {
+        List<JsonNode> records = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            records.add(record(i, width, depth));
+        }
+        return records;
+    }
+
+    /**
+     * A single document which has the records at {@link #ROOT}.
+     */
+    static byte[] document(int count, int width, int depth)
+    {
+        return document(count, width, depth, OBJECT_MAPPER.getFactory());
+    }
+
+    /**
+     * The same document as {@link #document(int, int, int)}, encoded by a factory of a binary format such as Smile.
+     */
+    static byte[] document(int count, int width, int depth, JsonFactory factory)
+    {
+        ObjectNode document = NODES.objectNode();
+        document.putObject("meta").put("count", count);
+        ArrayNode array = document.putObject("data").putArray("records");
+        array.addAll(records(count, width, depth));
+        try {
+            return new ObjectMapper(factory.copy()).writeValueAsBytes(document);
+        }
+        catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * One record per line.
+     */
+    static byte[] lines(int count, int width, int depth)
+    {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        try {
+            for (JsonNode record : records(count, width, depth)) {
+                out.write(OBJECT_MAPPER.writeValueAsBytes(record));
+                out.write('\n');
+            }
+        }
+        catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return out.toByteArray();
+    }
+
+    /**
+     * A single file of {@code data} in Embulk buffers of 32 KiB, as a file input plugin passes it to the parser.
+     */
+    static FileInput fileInput(byte[] data)
+    {
+        return new InputStreamFileInput(new HeapBufferAllocator(),
+                new InputStreamFileInput.IteratorProvider(Collections.singletonList(new ByteArrayInputStream(data))));
+    }
+
+    static ConfigSource config(int width, int depth)
+    {
+        List<Map<String, Object>> columns = new ArrayList<>();
+        String prefix = "$";
+        for (int level = 0; level <= depth; level++) {
+            for (int i = 0; i < width; i++) {
+                Map<String, Object> column = new LinkedHashMap<>();
+                column.put("name", "c" + level + "_" + i);
+                column.put("type", TYPES[i % TYPES.length]);
+                column.put("path", prefix + ".f" + i);
+                columns.add(column);
+            }
+            prefix += ".child";
+        }
+        return CONFIG_MAPPER_FACTORY.newConfigSource()
+                .set("type", "jsonpath")
+                .set("root", ROOT)
+                .set("columns", columns);
+    }
+
+    static PluginTask task(ConfigSource config)
+    {
+        return CONFIG_MAPPER_FACTORY.createConfigMapper().map(config, PluginTask.class);
+    }
+
+    static PageBuilder pageBuilder(Schema schema)
+    {
+        return new PageBuilder(new HeapBufferAllocator(), schema, new DiscardingPageOutput());
+    }
+
+    private static ObjectNode record(int seq, int width, int depth)
+    {
+        ObjectNode record = NODES.objectNode();
+        for (int i = 0; i < width; i++) {
+            String name = "f" + i;
+            switch (TYPES[i % TYPES.length]) {
+                case "long":
+                    record.put(name, seq * 31L + i);
+                    break;
+                case "double":
+                    record.put(name, seq + i / 8.0);
+                    break;
+                case "string":
+                    record.put(name, "value-" + seq + "-" + i);
+                    break;
+                case "boolean":
+                    record.put(name, (seq + i) % 2 == 0);
+                    break;
+                case "timestamp":
+                    record.put(name, TIMESTAMP);
+                    break;
+                default:
+                    ObjectNode json = record.putObject(name);
+                    json.put("id", seq);
+                    json.putArray("tags").add("a").add("b");
+                    break;
+            }
+        }
+        if (depth > 0) {
+            record.set("child", record(seq, width, depth - 1));
+        }
+        return record;
+    }
+
+    private static class HeapBufferAllocator
+            implements BufferAllocator
+    {
+        private static final int PAGE_SIZE = 32 * 1024;
+
+        @Override
+        public Buffer allocate()
+        {
+            return allocate(PAGE_SIZE);
+        }
+
+        @SuppressWarnings("deprecation")
+        @Override
+        public Buffer allocate(int minimumCapacity)
+        {
+            return Buffer.allocate(Math.max(minimumCapacity, PAGE_SIZE));
+        }
+    }
+
+    private static class DiscardingPageOutput
+            implements PageOutput
+    {
+        @Override
+        public void add(Page page)
+        {
+            page.release();
+        }
+
+        @Override
+        public void finish()
+        {
+        }
+
+        @Override
+        public void close()
+        {
+        }
+    }
+}
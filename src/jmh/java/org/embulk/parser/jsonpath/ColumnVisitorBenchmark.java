@@ -0,0 +1,135 @@
+package org.embulk.parser.jsonpath;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.node.JsonNodeFactory;
+import org.embulk.config.ConfigSource;
+import org.embulk.parser.jsonpath.JsonpathParserPlugin.PluginTask;
+import org.embulk.spi.Column;
+import org.embulk.spi.PageBuilder;
+import org.embulk.spi.Schema;
+import org.embulk.util.timestamp.TimestampFormatter;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Converting one cell for each column type, from a value of the matching JSON type or from a string.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+public class ColumnVisitorBenchmark
+{
+    private static final int CELLS = 1000;
+    private static final JsonNodeFactory NODES = JsonNodeFactory.instance;
+
+    @Param({"boolean", "long", "double", "string", "timestamp", "json"})
+    public String type;
+
+    @Param({"native", "text"})
+    public String source;
+
+    @Param({"true", "false"})
+    public boolean typecast;
+
+    private PageBuilder pageBuilder;
+    private ColumnVisitorImpl visitor;
+    private Column column;
+    private JsonNode[] values;
+
+    @SuppressWarnings("deprecation")
+    @Setup
+    public void setup()
+    {
+        Map<String, Object> columnConfig = new LinkedHashMap<>();
+        columnConfig.put("name", "c");
+        columnConfig.put("type", type);
+        ConfigSource config = BenchmarkData.config(0, 0)
+                .set("columns", Collections.singletonList(columnConfig))
+                .set("default_typecast", typecast);
+        PluginTask task = BenchmarkData.task(config);
+        Schema schema = new JsonpathParserPlugin().getSchemaConfig(task).toSchema();
+
+        TimestampFormatter[] timestampParsers = {TimestampFormatter.builder(task.getDefaultTimestampFormat(), true)
+                .setDefaultZoneFromString(task.getDefaultTimeZoneId())
+                .setDefaultDateFromString(task.getDefaultDate())
+                .build()};
+        pageBuilder = BenchmarkData.pageBuilder(schema);
+        visitor = new ColumnVisitorImpl(task, schema, pageBuilder, timestampParsers);
+        column = schema.getColumn(0);
+
+        values = new JsonNode[CELLS];
+        for (int i = 0; i < CELLS; i++) {
+            values[i] = source.equals("text") ? NODES.textNode(text(i)) : nativeValue(i);
+        }
+    }
+
+    @TearDown
+    public void tearDown()
+    {
+        pageBuilder.close();
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(CELLS)
+    public void visit()
+    {
+        for (JsonNode value : values) {
+            visitor.setValue(value);
+            column.visit(visitor);
+            pageBuilder.addRecord();
+        }
+    }
+
+    private JsonNode nativeValue(int i)
+    {
+        switch (type) {
+            case "boolean":
+                return NODES.booleanNode(i % 2 == 0);
+            case "long":
+                return NODES.numberNode(i * 7919L);
+            case "double":
+                return NODES.numberNode(i / 8.0);
+            case "json":
+                return NODES.objectNode().put("id", i).put("name", "value-" + i);
+            default:
+                return NODES.textNode(text(i));
+        }
+    }
+
+    private String text(int i)
+    {
+        switch (type) {
+            case "boolean":
+                return i % 2 == 0 ? "true" : "no";
+            case "long":
+                return Long.toString(i * 7919L);
+            case "double":
+                return Double.toString(i / 8.0);
+            case "timestamp":
+                return BenchmarkData.TIMESTAMP;
+            case "json":
+                return "{\"id\":" + i + ",\"name\":\"value-" + i + "\"}";
+            default:
+                return "value-" + i;
+        }
+    }
+}
@@ -0,0 +1,139 @@
+package org.embulk.parser.jsonpath;
+
+import org.embulk.config.ConfigSource;
+import org.embulk.parser.jsonpath.JsonpathParserPlugin.PluginTask;
+import org.embulk.spi.FileInput;
+import org.embulk.spi.PageBuilder;
+import org.embulk.spi.Schema;
+import org.embulk.util.file.FileInputInputStream;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Whole-file parsing of text and binary formats, with and without building pages from the records.
+ * Files are read from a {@link FileInput} of Embulk buffers, as in {@link JsonpathParserPlugin#run}.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+public class ParseBenchmark
+{
+    @Param({"1000"})
+    public int records;
+
+    @Param({"12", "48"})
+    public int width;
+
+    @Param({"0", "2"})
+    public int depth;
+
+    // smile and cbor hold the same document as json, so that text and binary parsing can be compared.
+    @Param({"json", "jsonl", "smile", "cbor"})
+    public String format;
+
+    @Param({"jayway", "jackson_streaming"})
+    public String engine;
+
+    // non_closing reads the FileInputInputStream in bulk through NonClosingInputStream, as the plugin does.
+    // per_byte reads it through an InputStream which overrides read() only, so that each byte is one call,
+    // as the plugin did before NonClosingInputStream.
+    @Param({"non_closing", "per_byte"})
+    public String input;
+
+    private JsonpathParserPlugin plugin;
+    private PluginTask task;
+    private JsonEngine jsonEngine;
+    private byte[] data;
+    private PageBuilder pageBuilder;
+    private ParserMetrics metrics;
+    private InvalidRecordHandler invalidRecords;
+    private RecordMaterializer materializer;
+    private JsonpathParserPlugin.StreamingRecordReader streamingReader;
+
+    @Setup
+    public void setup()
+    {
+        final boolean lines = format.equals("jsonl");
+        ConfigSource config = BenchmarkData.config(width, depth)
+                .set("format", format)
+                .set("json_engine", engine);
+        if (lines) {
+            config.set("root", "$");
+        }
+
+        plugin = new JsonpathParserPlugin();
+        task = BenchmarkData.task(config);
+        jsonEngine = JsonpathParserPlugin.newJsonEngine(task);
+        data = lines ? BenchmarkData.lines(records, width, depth) : BenchmarkData.document(records, width, depth, task.getFormat().getJsonFactory());
+
+        Schema schema = plugin.getSchemaConfig(task).toSchema();
+        pageBuilder = BenchmarkData.pageBuilder(schema);
+        metrics = new ParserMetrics();
+        invalidRecords = new InvalidRecordHandler(false, metrics, Optional.empty());
+        materializer = plugin.newRecordMaterializer(task, schema, pageBuilder, new ArrayList<>(), metrics);
+        // As in JsonpathParserPlugin.run, streaming records are decoded from tokens when the column paths allow it.
+        streamingReader = materializer.isStreamable()
+                ? materializer::addRecord
+                : JsonpathParserPlugin.treeRecordReader(materializer::addRecord, metrics);
+    }
+
+    @TearDown
+    public void tearDown()
+    {
+        pageBuilder.close();
+    }
+
+    @Benchmark
+    public void parse(Blackhole blackhole)
+    {
+        try (final FileInput fileInput = BenchmarkData.fileInput(data);
+                final FileInputInputStream is = new FileInputInputStream(fileInput)) {
+            is.nextFile();
+            plugin.parseFile(wrap(is), task, jsonEngine, blackhole::consume);
+        }
+    }
+
+    @Benchmark
+    public void parseAndBuildPages()
+    {
+        try (final FileInput fileInput = BenchmarkData.fileInput(data);
+                final FileInputInputStream is = new FileInputInputStream(fileInput)) {
+            is.nextFile();
+            plugin.parseFile(wrap(is), task, jsonEngine, materializer::addRecord, streamingReader, metrics, invalidRecords);
+        }
+        pageBuilder.flush();
+    }
+
+    private InputStream wrap(FileInputInputStream is)
+    {
+        if (input.equals("per_byte")) {
+            return new InputStream() {
+                @Override
+                public int read()
+                {
+                    return is.read();
+                }
+            };
+        }
+        return new NonClosingInputStream(is);
+    }
+}
@@ -0,0 +1,119 @@
+package org.embulk.parser.jsonpath;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.jayway.jsonpath.Configuration;
+import com.jayway.jsonpath.JsonPath;
+import com.jayway.jsonpath.spi.json.JacksonJsonNodeJsonProvider;
+import com.jayway.jsonpath.spi.mapper.JacksonMappingProvider;
+import org.embulk.parser.jsonpath.JsonpathParserPlugin.PluginTask;
+import org.embulk.spi.Schema;
+import org.embulk.util.config.units.ColumnConfig;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Root extraction from a parsed document, and per-column path evaluation on parsed records.
+ *
+ * The {@code WithJsonPath} variants read every path with Jayway, which is what the plugin did before it
+ * followed simple paths itself.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+public class PathBenchmark
+{
+    private static final Configuration JSON_PATH_CONFIG = Configuration
+            .builder()
+            .mappingProvider(new JacksonMappingProvider())
+            .jsonProvider(new JacksonJsonNodeJsonProvider())
+            .build();
+
+    @Param({"100"})
+    public int records;
+
+    @Param({"12", "48"})
+    public int width;
+
+    @Param({"0", "2"})
+    public int depth;
+
+    private JsonNode document;
+    private List<JsonNode> recordValues;
+    private JsonPath rootPath;
+    private SimpleJsonPath simpleRoot;
+    private ColumnPathEvaluator evaluator;
+    private JsonPath[] columnPaths;
+    private JsonNode[] values;
+
+    @Setup
+    public void setup()
+            throws IOException
+    {
+        JsonpathParserPlugin plugin = new JsonpathParserPlugin();
+        PluginTask task = BenchmarkData.task(BenchmarkData.config(width, depth));
+        Schema schema = plugin.getSchemaConfig(task).toSchema();
+
+        document = new ObjectMapper().readTree(BenchmarkData.document(records, width, depth));
+        recordValues = BenchmarkData.records(records, width, depth);
+        rootPath = JsonPath.compile(BenchmarkData.ROOT);
+        simpleRoot = SimpleJsonPath.parse(BenchmarkData.ROOT).get();
+        evaluator = plugin.createColumnPathEvaluator(task, schema);
+
+        List<ColumnConfig> columns = plugin.getSchemaConfig(task).getColumns();
+        columnPaths = new JsonPath[columns.size()];
+        for (int i = 0; i < columns.size(); i++) {
+            columnPaths[i] = JsonPath.compile(columns.get(i).getOption().get(String.class, "path"));
+        }
+        values = new JsonNode[schema.size()];
+    }
+
+    @Benchmark
+    public JsonNode extractRootWithJsonPath()
+    {
+        return rootPath.read(document, JSON_PATH_CONFIG);
+    }
+
+    @Benchmark
+    public JsonNode extractRootWithSimplePath()
+    {
+        return simpleRoot.evaluate(document);
+    }
+
+    @Benchmark
+    public void evaluateColumns(Blackhole blackhole)
+    {
+        for (JsonNode record : recordValues) {
+            evaluator.evaluate(record, values);
+            blackhole.consume(values);
+        }
+    }
+
+    @Benchmark
+    public void evaluateColumnsWithJsonPath(Blackhole blackhole)
+    {
+        for (JsonNode record : recordValues) {
+            for (int i = 0; i < columnPaths.length; i++) {
+                values[i] = columnPaths[i].read(record, JSON_PATH_CONFIG);
+            }
+            blackhole.consume(values);
+        }
+    }
+}
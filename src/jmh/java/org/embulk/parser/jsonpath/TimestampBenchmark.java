@@ -0,0 +1,98 @@
+package org.embulk.parser.jsonpath;
+
+import org.embulk.spi.Column;
+import org.embulk.spi.type.Types;
+import org.embulk.util.timestamp.TimestampFormatter;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.time.format.DateTimeFormatter;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Parsing timestamp strings with the generic formatter, the fast parser and the cache.
+ *
+ * The values advance by one second every {@code repeat} values, like the timestamps of an event log.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+public class TimestampBenchmark
+{
+    private static final int VALUES = 1000;
+
+    @Param({"%Y-%m-%d %H:%M:%S.%N %z", "%Y-%m-%dT%H:%M:%S%z", "%Y-%m-%d %H:%M:%S"})
+    public String pattern;
+
+    @Param({"1", "100"})
+    public int repeat;
+
+    private TimestampColumnParser formatter;
+    private TimestampColumnParser fastParser;
+    private String[] values;
+
+    @SuppressWarnings("deprecation")
+    @Setup
+    public void setup()
+    {
+        formatter = TimestampColumnParser.of(TimestampFormatter.builder(pattern, true)
+                .setDefaultZoneFromString("UTC")
+                .setDefaultDateFromString("1970-01-01")
+                .build());
+        fastParser = FastTimestampParser.of(pattern, "UTC", formatter).get();
+
+        DateTimeFormatter javaFormatter = DateTimeFormatter.ofPattern(pattern
+                .replace("%Y", "yyyy").replace("%m", "MM").replace("%d", "dd")
+                .replace("%H", "HH").replace("%M", "mm").replace("%S", "ss")
+                .replace("%N", "SSSSSS").replace("%z", "xx").replace("T", "'T'"))
+                .withZone(ZoneOffset.UTC);
+        values = new String[VALUES];
+        for (int i = 0; i < VALUES; i++) {
+            values[i] = javaFormatter.format(Instant.ofEpochSecond(1700000000L + i / repeat, 123456000L));
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(VALUES)
+    public void formatter(Blackhole blackhole)
+    {
+        parseAll(formatter, blackhole);
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(VALUES)
+    public void fastParser(Blackhole blackhole)
+    {
+        parseAll(fastParser, blackhole);
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(VALUES)
+    public void cachedFormatter(Blackhole blackhole)
+    {
+        parseAll(new TimestampCache(new Column(0, "c", Types.TIMESTAMP), formatter, 16), blackhole);
+    }
+
+    private void parseAll(TimestampColumnParser parser, Blackhole blackhole)
+    {
+        for (String value : values) {
+            blackhole.consume(parser.parse(value));
+        }
+    }
+}
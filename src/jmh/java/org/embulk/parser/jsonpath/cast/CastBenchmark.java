@@ -0,0 +1,118 @@
+package org.embulk.parser.jsonpath.cast;
+
+import org.embulk.util.timestamp.TimestampFormatter;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.time.Instant;
+import java.util.concurrent.TimeUnit;
+
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+public class CastBenchmark
+{
+    // Non-final so that the JIT can not fold the casts into constants.
+    public String longString = "1234567890";
+    public String doubleString = "12345.6789";
+    public String longDoubleString = "-98765.43210987654321e-3";
+    public String booleanString = "yes";
+    public String timestampString = "2024-01-02 03:04:05.123456 +0000";
+    public long longValue = 1234567890L;
+    public double doubleValue = 12345.6789;
+    public boolean booleanValue = true;
+
+    private TimestampFormatter timestampParser;
+
+    @SuppressWarnings("deprecation")
+    @Setup
+    public void setup()
+    {
+        timestampParser = TimestampFormatter.builder("%Y-%m-%d %H:%M:%S.%N %z", true)
+                .setDefaultZoneFromString("UTC")
+                .build();
+    }
+
+    @Benchmark
+    public boolean stringAsBoolean()
+    {
+        return StringCast.asBoolean(booleanString);
+    }
+
+    @Benchmark
+    public long stringAsLong()
+    {
+        return StringCast.asLong(longString);
+    }
+
+    @Benchmark
+    public double stringAsDouble()
+    {
+        return StringCast.asDouble(doubleString);
+    }
+
+    @Benchmark
+    public double longStringAsDouble()
+    {
+        return StringCast.asDouble(longDoubleString);
+    }
+
+    @Benchmark
+    public double longStringParseDouble()
+    {
+        return Double.parseDouble(longDoubleString);
+    }
+
+    @Benchmark
+    public Instant stringAsTimestamp()
+    {
+        return StringCast.asTimestamp(timestampString, timestampParser);
+    }
+
+    @Benchmark
+    public String longAsString()
+    {
+        return LongCast.asString(longValue);
+    }
+
+    @Benchmark
+    public Instant longAsTimestamp()
+    {
+        return LongCast.asTimestamp(longValue);
+    }
+
+    @Benchmark
+    public long doubleAsLong()
+    {
+        return DoubleCast.asLong(doubleValue);
+    }
+
+    @Benchmark
+    public String doubleAsString()
+    {
+        return DoubleCast.asString(doubleValue);
+    }
+
+    @Benchmark
+    public Instant doubleAsTimestamp()
+    {
+        return DoubleCast.asTimestamp(doubleValue);
+    }
+
+    @Benchmark
+    public String booleanAsString()
+    {
+        return BooleanCast.asString(booleanValue);
+    }
+}
@@ -0,0 +1,159 @@
+package org.embulk.parser.jsonpath;
+
+import org.embulk.spi.Page;
+import org.embulk.spi.PageOutput;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+
+/**
+ * Passes pages on to another {@link PageOutput} on a dedicated thread, so that a slow output does not stop parsing.
+ *
+ * At most a given number of pages wait in a queue, and adding a page blocks while the queue is full.
+ * A failure of the output is thrown from the next {@link #add(Page)} or from {@link #finish()}.
+ * {@link #finish()} waits for the queued pages to be passed on before it finishes the output, and {@link #close()}
+ * releases the pages which are still queued before it closes the output.
+ */
+public class AsyncPageOutput
+        implements PageOutput
+{
+    private static final Object END = new Object();
+
+    private final PageOutput output;
+    private final BlockingQueue<Object> queue;
+    private final Thread thread;
+    private volatile Throwable failure;
+    private volatile boolean closing;
+    private boolean closed;
+
+    public AsyncPageOutput(PageOutput output, int queueSize)
+    {
+        this.output = output;
+        this.queue = new ArrayBlockingQueue<>(queueSize);
+        this.thread = new Thread(this::forward, "embulk-parser-jsonpath-output");
+        this.thread.setDaemon(true);
+        this.thread.start();
+    }
+
+    @Override
+    public void add(Page page)
+    {
+        try {
+            throwFailure();
+        }
+        catch (RuntimeException | Error e) {
+            page.release();
+            throw e;
+        }
+        put(page);
+    }
+
+    /**
+     * Waits for the queued pages to be passed on, and finishes the output.
+     */
+    @Override
+    public void finish()
+    {
+        stop();
+        throwFailure();
+        output.finish();
+    }
+
+    /**
+     * Drops the queued pages if {@link #finish()} was not called, and closes the output. Closing again does nothing.
+     */
+    @Override
+    public void close()
+    {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        closing = true;
+        try {
+            stop();
+        }
+        finally {
+            output.close();
+        }
+    }
+
+    private void stop()
+    {
+        if (!thread.isAlive()) {
+            return;
+        }
+        put(END);
+        boolean interrupted = false;
+        while (thread.isAlive()) {
+            try {
+                thread.join();
+            }
+            catch (InterruptedException e) {
+                interrupted = true;
+            }
+        }
+        if (interrupted) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void throwFailure()
+    {
+        final Throwable e = failure;
+        if (e instanceof RuntimeException) {
+            throw (RuntimeException) e;
+        }
+        if (e instanceof Error) {
+            throw (Error) e;
+        }
+        if (e != null) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    private void put(Object item)
+    {
+        boolean interrupted = false;
+        while (true) {
+            try {
+                queue.put(item);
+                break;
+            }
+            catch (InterruptedException e) {
+                interrupted = true;
+            }
+        }
+        if (interrupted) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    // After a failure or while closing, pages are still taken from the queue and released, so that adding is never blocked.
+    private void forward()
+    {
+        while (true) {
+            final Object item;
+            try {
+                item = queue.take();
+            }
+            catch (InterruptedException e) {
+                continue;
+            }
+            if (item == END) {
+                break;
+            }
+            final Page page = (Page) item;
+            if (failure != null || closing) {
+                page.release();
+                continue;
+            }
+            try {
+                output.add(page);
+            }
+            catch (Throwable e) {
+                failure = e;
+            }
+        }
+    }
+}
@@ -0,0 +1,297 @@
+package org.embulk.parser.jsonpath;
+
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.JsonNodeFactory;
+import com.jayway.jsonpath.Configuration;
+import com.jayway.jsonpath.JsonPath;
+import com.jayway.jsonpath.PathNotFoundException;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Reads the value of every column from a record.
+ *
+ * Columns whose path is a {@link SimpleJsonPath} (and columns without a path, which read the property
+ * of the column name) are merged into a trie, so a record is walked once and a prefix shared by several
+ * columns is looked up only once. Only paths with filters, wildcards, deep scans or functions are
+ * evaluated by Jayway, one by one.
+ *
+ * When no column needs Jayway, the trie can also be followed on a token stream, so that only the values
+ * of columns are built and everything else in the record is skipped. A column given a {@link TokenValue}
+ * keeps a scalar token in it instead of a JsonNode.
+ */
+public class ColumnPathEvaluator
+{
+    private static final class TrieNode
+    {
+        private final SimpleJsonPath.Segment segment;
+        private final List<TrieNode> childList = new ArrayList<>();
+        private final List<Integer> columnList = new ArrayList<>();
+        private TrieNode[] children;
+        private Map<String, TrieNode> nameChildren;
+        private int[] columns;
+        private int[] descendantColumns;
+
+        private TrieNode(SimpleJsonPath.Segment segment)
+        {
+            this.segment = segment;
+        }
+
+        private TrieNode child(SimpleJsonPath.Segment segment)
+        {
+            for (TrieNode child : childList) {
+                if (child.segment.equals(segment)) {
+                    return child;
+                }
+            }
+            TrieNode child = new TrieNode(segment);
+            childList.add(child);
+            return child;
+        }
+
+        private List<Integer> freeze()
+        {
+            List<Integer> descendants = new ArrayList<>(columnList);
+            children = childList.toArray(new TrieNode[0]);
+            nameChildren = new HashMap<>();
+            for (TrieNode child : children) {
+                descendants.addAll(child.freeze());
+                if (child.segment.isName()) {
+                    nameChildren.put(child.segment.getName(), child);
+                }
+            }
+            columns = toArray(columnList);
+            descendantColumns = toArray(descendants);
+            return descendants;
+        }
+
+        private TrieNode indexChild(int index)
+        {
+            for (TrieNode child : children) {
+                if (!child.segment.isName() && child.segment.getIndex() == index) {
+                    return child;
+                }
+            }
+            return null;
+        }
+    }
+
+    private static final ObjectMapper OBJECT_MAPPER = new ObjectMapper();
+    private static final JsonNodeFactory NODE_FACTORY = JsonNodeFactory.instance;
+
+    private final TrieNode root;
+    private final int[] jsonPathColumns;
+    private final JsonPath[] jsonPaths;
+    private final Configuration configuration;
+    private final boolean streamable;
+
+    public ColumnPathEvaluator(SimpleJsonPath[] simplePaths, JsonPath[] jsonPaths, Configuration configuration)
+    {
+        if (simplePaths.length != jsonPaths.length) {
+            throw new IllegalArgumentException("simplePaths and jsonPaths must have the same length");
+        }
+
+        this.root = new TrieNode(null);
+        List<Integer> jsonPathColumnList = new ArrayList<>();
+        boolean streamable = true;
+        for (int i = 0; i < simplePaths.length; i++) {
+            if (simplePaths[i] == null) {
+                jsonPathColumnList.add(i);
+                streamable = false;
+                continue;
+            }
+            streamable &= simplePaths[i].isStreamable();
+            TrieNode node = root;
+            for (SimpleJsonPath.Segment segment : simplePaths[i].getSegments()) {
+                node = node.child(segment);
+            }
+            node.columnList.add(i);
+        }
+        this.root.freeze();
+
+        this.jsonPathColumns = toArray(jsonPathColumnList);
+        this.jsonPaths = jsonPaths.clone();
+        this.configuration = configuration;
+        this.streamable = streamable;
+    }
+
+    /**
+     * Whether {@link #evaluate(JsonParser, JsonNode[])} can be used, that is, no column needs Jayway
+     * and no column counts an array index from the end.
+     */
+    public boolean isStreamable()
+    {
+        return streamable;
+    }
+
+    /**
+     * Stores the value of each column of {@code record} into {@code values}, indexed by column.
+     * A column whose path does not exist in the record gets null.
+     */
+    public void evaluate(JsonNode record, JsonNode[] values)
+    {
+        walk(root, record, values);
+        for (int column : jsonPathColumns) {
+            try {
+                values[column] = jsonPaths[column].read(record, configuration);
+            }
+            catch (PathNotFoundException e) {
+                values[column] = null;  // pass (value is nullable)
+            }
+        }
+    }
+
+    /**
+     * Reads the record at the current token of {@code parser} and stores the value of each column into
+     * {@code values}, with the same result as {@link #evaluate(JsonNode, JsonNode[])} on the record tree.
+     * Subtrees which no column refers to are skipped without being built.
+     * When this returns, the current token is the last token of the record.
+     */
+    public void evaluate(JsonParser parser, JsonNode[] values)
+            throws IOException
+    {
+        evaluate(parser, values, new TokenValue[values.length]);
+    }
+
+    /**
+     * Same as {@link #evaluate(JsonParser, JsonNode[])}, except that a scalar of a column whose element of
+     * {@code tokens} is not null is kept in that {@link TokenValue}, and its element of {@code values} is
+     * null. Every TokenValue which is not given a value is cleared.
+     */
+    public void evaluate(JsonParser parser, JsonNode[] values, TokenValue[] tokens)
+            throws IOException
+    {
+        if (!streamable) {
+            throw new IllegalStateException("Some columns can not be read from a token stream");
+        }
+        clear(root, values, tokens);
+        read(root, parser, values, tokens);
+    }
+
+    private static void read(TrieNode node, JsonParser parser, JsonNode[] values, TokenValue[] tokens)
+            throws IOException
+    {
+        if (node.columns.length > 0) {
+            if (acceptsToken(node, tokens) && TokenValue.accepts(parser)) {
+                // The scalar is kept as it is, and the columns below it stay null.
+                for (int column : node.columns) {
+                    tokens[column].read(parser);
+                }
+                return;
+            }
+            // The value itself is a column, so it has to be built anyway.
+            walk(node, readValue(parser), values);
+            return;
+        }
+
+        JsonToken token = parser.getCurrentToken();
+        if (token == JsonToken.START_OBJECT) {
+            while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                TrieNode child = node.nameChildren.get(parser.getCurrentName());
+                parser.nextToken();
+                if (child == null) {
+                    parser.skipChildren();
+                    continue;
+                }
+                // A later duplicate key replaces the earlier one, as in ObjectNode.
+                clear(child, values, tokens);
+                read(child, parser, values, tokens);
+            }
+        }
+        else if (token == JsonToken.START_ARRAY) {
+            for (int index = 0; parser.nextToken() != JsonToken.END_ARRAY; index++) {
+                TrieNode child = node.indexChild(index);
+                if (child == null) {
+                    parser.skipChildren();
+                    continue;
+                }
+                read(child, parser, values, tokens);
+            }
+        }
+        // A scalar has no children, so the columns below stay null.
+    }
+
+    // Builds the value at the current token the way ObjectMapper.readTree does.
+    private static JsonNode readValue(JsonParser parser)
+            throws IOException
+    {
+        switch (parser.getCurrentToken()) {
+            case VALUE_STRING:
+                return NODE_FACTORY.textNode(parser.getText());
+            case VALUE_NUMBER_INT:
+                switch (parser.getNumberType()) {
+                    case INT:
+                        return NODE_FACTORY.numberNode(parser.getIntValue());
+                    case LONG:
+                        return NODE_FACTORY.numberNode(parser.getLongValue());
+                    default:
+                        return NODE_FACTORY.numberNode(parser.getBigIntegerValue());
+                }
+            case VALUE_NUMBER_FLOAT:
+                if (parser.getNumberType() == JsonParser.NumberType.BIG_DECIMAL) {
+                    return NODE_FACTORY.numberNode(parser.getDecimalValue());
+                }
+                return NODE_FACTORY.numberNode(parser.getDoubleValue());
+            case VALUE_TRUE:
+                return NODE_FACTORY.booleanNode(true);
+            case VALUE_FALSE:
+                return NODE_FACTORY.booleanNode(false);
+            case VALUE_NULL:
+                return NODE_FACTORY.nullNode();
+            default:
+                return OBJECT_MAPPER.readTree(parser);
+        }
+    }
+
+    private static boolean acceptsToken(TrieNode node, TokenValue[] tokens)
+    {
+        for (int column : node.columns) {
+            if (tokens[column] == null) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static void clear(TrieNode node, JsonNode[] values, TokenValue[] tokens)
+    {
+        for (int column : node.descendantColumns) {
+            values[column] = null;
+            if (tokens[column] != null) {
+                tokens[column].clear();
+            }
+        }
+    }
+
+    private static void walk(TrieNode node, JsonNode value, JsonNode[] values)
+    {
+        if (value == null) {
+            for (int column : node.descendantColumns) {
+                values[column] = null;
+            }
+            return;
+        }
+        for (int column : node.columns) {
+            values[column] = value;
+        }
+        for (TrieNode child : node.children) {
+            walk(child, child.segment.select(value), values);
+        }
+    }
+
+    private static int[] toArray(List<Integer> list)
+    {
+        int[] array = new int[list.size()];
+        for (int i = 0; i < array.length; i++) {
+            array[i] = list.get(i);
+        }
+        return array;
+    }
+}
@@ -1,10 +1,18 @@
 package org.embulk.parser.jsonpath;
 
+import com.fasterxml.jackson.core.io.NumberInput;
 import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.node.JsonNodeFactory;
 import org.embulk.parser.jsonpath.JsonpathParserPlugin.PluginTask;
 import org.embulk.parser.jsonpath.JsonpathParserPlugin.TypecastColumnOption;
+import org.embulk.parser.jsonpath.cast.BooleanCast;
+import org.embulk.parser.jsonpath.cast.DoubleCast;
+import org.embulk.parser.jsonpath.cast.FastDoubleParser;
+import org.embulk.parser.jsonpath.cast.LongCast;
+import org.embulk.parser.jsonpath.cast.StringCast;
 import org.embulk.spi.Column;
 import org.embulk.spi.ColumnVisitor;
+import org.embulk.spi.DataException;
 import org.embulk.spi.PageBuilder;
 import org.embulk.spi.Schema;
 import org.embulk.util.config.ConfigMapper;
@@ -18,33 +26,33 @@ import org.msgpack.core.MessageTypeException;
 
 import java.time.Instant;
 import java.util.Arrays;
-import java.util.Collections;
-import java.util.List;
 import java.util.Optional;
 
-import static java.lang.String.format;
-import static org.msgpack.value.ValueFactory.newBoolean;
-import static org.msgpack.value.ValueFactory.newFloat;
-import static org.msgpack.value.ValueFactory.newInteger;
-import static org.msgpack.value.ValueFactory.newString;
-
 public class ColumnVisitorImpl
         implements ColumnVisitor
 {
     private static final JsonParser JSON_PARSER = new JsonParser();
-    private static final List<String> BOOL_TRUE_STRINGS = Collections.unmodifiableList(Arrays.asList("true", "1", "yes", "on", "y", "t"));
-    private static final List<String> BOOL_FALSE_STRINGS = Collections.unmodifiableList(Arrays.asList("false", "0", "no", "off", "n", "f"));
+    private static final String[] BOOL_TRUE_STRINGS = {"true", "1", "yes", "on", "y", "t"};
+    private static final String[] BOOL_FALSE_STRINGS = {"false", "0", "no", "off", "n", "f"};
     private static final ConfigMapperFactory CONFIG_MAPPER_FACTORY = ConfigMapperFactory.builder().addDefaultModules().build();
 
     protected final PluginTask task;
     protected final Schema schema;
     protected final PageBuilder pageBuilder;
-    protected final TimestampFormatter[] timestampParsers;
+    protected final TimestampColumnParser[] timestampParsers;
     protected final Boolean[] autoTypecasts;
 
     protected JsonNode value;
+    protected TokenValue token;
 
     public ColumnVisitorImpl(PluginTask task, Schema schema, PageBuilder pageBuilder, TimestampFormatter[] timestampParsers)
+    {
+        this(task, schema, pageBuilder, Arrays.stream(timestampParsers)
+                .map(formatter -> formatter != null ? TimestampColumnParser.of(formatter) : null)
+                .toArray(TimestampColumnParser[]::new));
+    }
+
+    public ColumnVisitorImpl(PluginTask task, Schema schema, PageBuilder pageBuilder, TimestampColumnParser[] timestampParsers)
     {
         this.task = task;
         this.schema = schema;
@@ -77,11 +85,29 @@ public class ColumnVisitorImpl
     public void setValue(JsonNode value)
     {
         this.value = value;
+        this.token = null;
+    }
+
+    /**
+     * Sets a scalar taken from a token stream, which is converted with the same result as its JsonNode.
+     * Only boolean, long, double and string columns accept it.
+     */
+    public void setValue(TokenValue token)
+    {
+        this.value = null;
+        this.token = token;
     }
 
+    // The cell is converted from the JsonNode straight to a primitive; the cast methods used when `typecast`
+    // is enabled are the ones ColumnCaster would pick for a value of that primitive type.
     @Override
     public void booleanColumn(Column column)
     {
+        if (token != null) {
+            final boolean val = tokenAsBoolean();
+            pageBuilder.setBoolean(column, autoTypecasts[column.getIndex()] ? BooleanCast.asBoolean(val) : val);
+            return;
+        }
         if (isNil(value)) {
             pageBuilder.setNull(column);
             return;
@@ -92,76 +118,66 @@ public class ColumnVisitorImpl
             val = value.asBoolean();
         }
         else {
-            String stringValue = valueAsString().toLowerCase();
-            if (BOOL_TRUE_STRINGS.contains(stringValue)) {
+            String stringValue = valueAsString();
+            if (matchesLowerCase(BOOL_TRUE_STRINGS, stringValue)) {
                 val = true;
             }
-            else if (BOOL_FALSE_STRINGS.contains(stringValue)) {
+            else if (matchesLowerCase(BOOL_FALSE_STRINGS, stringValue)) {
                 val = false;
             }
             else {
-                throw new JsonRecordValidateException(format("can not convert '%s' to Boolean", value));
+                throw JsonRecordValidateException.of("can not convert '%s' to Boolean", value);
             }
         }
 
-        try {
-            boolean booleanValue = autoTypecasts[column.getIndex()] ? ColumnCaster.asBoolean(newBoolean(val)) : val;
-            pageBuilder.setBoolean(column, booleanValue);
-        }
-        catch (MessageTypeException e) {
-            throw new JsonRecordValidateException(format("failed to get \"%s\" as Boolean", value), e);
-        }
+        pageBuilder.setBoolean(column, autoTypecasts[column.getIndex()] ? BooleanCast.asBoolean(val) : val);
     }
 
     @Override
     public void longColumn(Column column)
     {
-        if (isNil(value)) {
+        if (token != null) {
+            final long longValue = tokenAsLong();
+            pageBuilder.setLong(column, autoTypecasts[column.getIndex()] ? LongCast.asLong(longValue) : longValue);
+        }
+        else if (isNil(value)) {
             pageBuilder.setNull(column);
         }
         else {
-            try {
-                long longValue = autoTypecasts[column.getIndex()] ? ColumnCaster.asLong(newInteger(value.asLong())) : value.asLong();
-                pageBuilder.setLong(column, longValue);
-            }
-            catch (MessageTypeException e) {
-                throw new JsonRecordValidateException(format("failed to get \"%s\" as Long", value), e);
-            }
+            final long longValue = value.asLong();
+            pageBuilder.setLong(column, autoTypecasts[column.getIndex()] ? LongCast.asLong(longValue) : longValue);
         }
     }
 
     @Override
     public void doubleColumn(Column column)
     {
-        if (isNil(value)) {
+        if (token != null) {
+            final double doubleValue = tokenAsDouble();
+            pageBuilder.setDouble(column, autoTypecasts[column.getIndex()] ? DoubleCast.asDouble(doubleValue) : doubleValue);
+        }
+        else if (isNil(value)) {
             pageBuilder.setNull(column);
         }
         else {
-            try {
-                double doubleValue = autoTypecasts[column.getIndex()] ? ColumnCaster.asDouble(newFloat(value.asDouble())) : value.asDouble();
-                pageBuilder.setDouble(column, doubleValue);
-            }
-            catch (MessageTypeException e) {
-                throw new JsonRecordValidateException(format("failed get \"%s\" as Double", value), e);
-            }
+            final double doubleValue = value.isTextual() ? textAsDouble(value.textValue()) : value.asDouble();
+            pageBuilder.setDouble(column, autoTypecasts[column.getIndex()] ? DoubleCast.asDouble(doubleValue) : doubleValue);
         }
     }
 
     @Override
     public void stringColumn(Column column)
     {
-        if (isNil(value)) {
+        if (token != null) {
+            final String stringValue = tokenAsString();
+            pageBuilder.setString(column, autoTypecasts[column.getIndex()] ? StringCast.asString(stringValue) : stringValue);
+        }
+        else if (isNil(value)) {
             pageBuilder.setNull(column);
         }
         else {
             final String stringValue = valueAsString();
-            try {
-                String string = autoTypecasts[column.getIndex()] ? ColumnCaster.asString(newString(stringValue)) : stringValue;
-                pageBuilder.setString(column, string);
-            }
-            catch (MessageTypeException e) {
-                throw new JsonRecordValidateException(format("failed to get \"%s\" as String", value), e);
-            }
+            pageBuilder.setString(column, autoTypecasts[column.getIndex()] ? StringCast.asString(stringValue) : stringValue);
         }
     }
 
@@ -173,21 +189,16 @@ public class ColumnVisitorImpl
             pageBuilder.setNull(column);
         }
         else {
+            Instant instant = timestampParsers[column.getIndex()].parse(value);
             try {
-                Instant instant = ColumnCaster.asTimestamp(newString(value.asText()), timestampParsers[column.getIndex()]);
-                try {
-                    pageBuilder.setTimestamp(column, instant);
-                }
-                catch (final NoSuchMethodError ex) {
-                    // PageBuilder with Instant is available from v0.10.13, and org.embulk.spi.Timestamp is deprecated.
-                    // It is not expected to happen because this plugin is embedded with Embulk v0.10.24+, but falling back just in case.
-                    // TODO: Remove this fallback in v0.11.
-                    // logger.warn("embulk-parser-jsonpath is expected to work with Embulk v0.10.17+.", ex);
-                    pageBuilder.setTimestamp(column, org.embulk.spi.time.Timestamp.ofInstant(instant));
-                }
+                pageBuilder.setTimestamp(column, instant);
             }
-            catch (MessageTypeException e) {
-                throw new JsonRecordValidateException(format("failed to get \"%s\" as Timestamp", value), e);
+            catch (final NoSuchMethodError ex) {
+                // PageBuilder with Instant is available from v0.10.13, and org.embulk.spi.Timestamp is deprecated.
+                // It is not expected to happen because this plugin is embedded with Embulk v0.10.24+, but falling back just in case.
+                // TODO: Remove this fallback in v0.11.
+                // logger.warn("embulk-parser-jsonpath is expected to work with Embulk v0.10.17+.", ex);
+                pageBuilder.setTimestamp(column, org.embulk.spi.time.Timestamp.ofInstant(instant));
             }
         }
     }
@@ -200,10 +211,11 @@ public class ColumnVisitorImpl
         }
         else {
             try {
-                pageBuilder.setJson(column, JSON_PARSER.parse(valueAsString()));
+                // A textual value is JSON embedded in a string, so it still has to be parsed.
+                pageBuilder.setJson(column, value.isTextual() ? JSON_PARSER.parse(value.asText()) : JsonNodeValueConverter.toValue(value));
             }
             catch (MessageTypeException | JsonParseException e) {
-                throw new JsonRecordValidateException(format("failed to get \"%s\" as Json", value), e);
+                throw JsonRecordValidateException.of(e, "failed to get \"%s\" as Json", value);
             }
         }
     }
@@ -213,8 +225,164 @@ public class ColumnVisitorImpl
         return v == null || v.isNull();
     }
 
+    // A binary value of Smile or CBOR is taken as its base64 text, without the quotes of JSON.
     private String valueAsString()
     {
-        return value.isTextual() ? value.asText() : value.toString();
+        return value.isTextual() || value.isBinary() ? value.asText() : value.toString();
+    }
+
+    // The token conversions below give what the conversions above give for the JsonNode of the token,
+    // which is a TextNode, a LongNode or a DoubleNode. A string is read in place from the characters of
+    // the token by the casts of StringCast where they agree with JsonNode, and as a String otherwise.
+
+    private boolean tokenAsBoolean()
+    {
+        if (token.isText()) {
+            final char[] text = token.getTextCharacters();
+            final int length = token.getTextLength();
+            try {
+                // The spellings of StringCast are a subset of the case-insensitive ones of this column.
+                return StringCast.asBoolean(text, 0, length);
+            }
+            catch (DataException e) {
+                if (matchesLowerCase(BOOL_TRUE_STRINGS, text, length)) {
+                    return true;
+                }
+                else if (matchesLowerCase(BOOL_FALSE_STRINGS, text, length)) {
+                    return false;
+                }
+            }
+            // The message quotes a string as JSON, as that of a JsonNode does.
+            throw JsonRecordValidateException.of("can not convert '%s' to Boolean", JsonNodeFactory.instance.textNode(token.getText()));
+        }
+        if (token.isLong() && (token.getLongValue() == 0 || token.getLongValue() == 1)) {
+            return token.getLongValue() == 1;
+        }
+        throw JsonRecordValidateException.of("can not convert '%s' to Boolean", tokenAsString());
+    }
+
+    private long tokenAsLong()
+    {
+        if (token.isText()) {
+            final char[] text = token.getTextCharacters();
+            final int length = token.getTextLength();
+            // JsonNode#asLong() takes anything else, such as surrounding spaces or "1e3", in its own lenient way.
+            if (isAsciiInteger(text, length)) {
+                try {
+                    return StringCast.asLong(text, 0, length);
+                }
+                catch (DataException e) {
+                    return 0L;  // out of the range of long, which is 0 to JsonNode#asLong() as well
+                }
+            }
+            return NumberInput.parseAsLong(token.getText(), 0L);
+        }
+        return token.isLong() ? token.getLongValue() : (long) token.getDoubleValue();
+    }
+
+    private double tokenAsDouble()
+    {
+        if (token.isText()) {
+            final char[] text = token.getTextCharacters();
+            // Trimmed in the same way as String#trim()
+            int start = 0;
+            int end = token.getTextLength();
+            while (start < end && text[start] <= ' ') {
+                start++;
+            }
+            while (start < end && text[end - 1] <= ' ') {
+                end--;
+            }
+            if (start == end) {
+                return 0.0;
+            }
+            try {
+                return StringCast.asDouble(text, start, end - start);
+            }
+            catch (DataException e) {
+                return 0.0;
+            }
+        }
+        return token.isLong() ? (double) token.getLongValue() : token.getDoubleValue();
+    }
+
+    private String tokenAsString()
+    {
+        if (token.isText()) {
+            return token.getText();
+        }
+        return token.isLong() ? Long.toString(token.getLongValue()) : Double.toString(token.getDoubleValue());
+    }
+
+    // Same as JsonNode#asDouble() of a string, which is 0.0 unless the trimmed string is a number
+    private static double textAsDouble(String text)
+    {
+        String trimmed = text.trim();
+        if (trimmed.isEmpty()) {
+            return 0.0;
+        }
+        try {
+            return FastDoubleParser.parseDouble(trimmed);
+        }
+        catch (NumberFormatException e) {
+            return 0.0;
+        }
+    }
+
+    // Whether the lower case of the value is one of the candidates, without making a lower-cased copy of it
+    private static boolean matchesLowerCase(String[] candidates, String value)
+    {
+        for (String candidate : candidates) {
+            if (candidate.length() == value.length() && matchesLowerCase(candidate, value)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static boolean matchesLowerCase(String candidate, String value)
+    {
+        for (int i = 0; i < candidate.length(); i++) {
+            if (Character.toLowerCase(value.charAt(i)) != candidate.charAt(i)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static boolean matchesLowerCase(String[] candidates, char[] value, int length)
+    {
+        for (String candidate : candidates) {
+            if (candidate.length() == length && matchesLowerCase(candidate, value)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static boolean matchesLowerCase(String candidate, char[] value)
+    {
+        for (int i = 0; i < candidate.length(); i++) {
+            if (Character.toLowerCase(value[i]) != candidate.charAt(i)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    // Whether the value is an optional sign and ASCII digits, which StringCast#asLong() and JsonNode#asLong()
+    // read to the same long
+    private static boolean isAsciiInteger(char[] value, int length)
+    {
+        int i = length > 0 && (value[0] == '-' || value[0] == '+') ? 1 : 0;
+        if (i == length) {
+            return false;
+        }
+        for (; i < length; i++) {
+            if (value[i] < '0' || value[i] > '9') {
+                return false;
+            }
+        }
+        return true;
     }
 }
@@ -0,0 +1,366 @@
+package org.embulk.parser.jsonpath;
+
+import org.embulk.spi.DataException;
+
+import java.time.DateTimeException;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.time.ZoneOffset;
+import java.time.zone.ZoneRules;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.regex.Pattern;
+
+/**
+ * Parses timestamps of well-known strftime patterns, such as {@code %Y-%m-%dT%H:%M:%S%z} or
+ * {@code %Y-%m-%d %H:%M:%S.%N %z}, with plain digit arithmetic.
+ *
+ * Only the canonical form of a value is handled here: fixed-width fields, a single space, a fraction of
+ * up to 9 digits, and an offset written as {@code Z}, {@code +HH:MM} or {@code +HHMM}. A value in any other
+ * form, an out-of-range field, or a local time in a daylight saving gap or overlap of the default time zone,
+ * is passed to the fallback parser, so the results are always those of the fallback.
+ */
+public class FastTimestampParser
+        implements TimestampColumnParser
+{
+    private static final Pattern OFFSET_ID = Pattern.compile("[+-]\\d{2}:\\d{2}");
+
+    private enum Field
+    {
+        YEAR, MONTH, DAY, HOUR, MINUTE, SECOND, FRACTION, OFFSET, LITERAL
+    }
+
+    private final Field[] fields;
+    private final char[] literals;
+    private final int defaultOffsetSeconds;
+    private final ZoneRules defaultZoneRules;
+    private final TimestampColumnParser fallback;
+
+    private FastTimestampParser(Field[] fields, char[] literals, ZoneId defaultZone, TimestampColumnParser fallback)
+    {
+        this.fields = fields;
+        this.literals = literals;
+        ZoneRules rules = defaultZone.getRules();
+        if (rules.isFixedOffset()) {
+            this.defaultOffsetSeconds = rules.getOffset(Instant.EPOCH).getTotalSeconds();
+            this.defaultZoneRules = null;
+        }
+        else {
+            this.defaultOffsetSeconds = 0;
+            this.defaultZoneRules = rules;
+        }
+        this.fallback = fallback;
+    }
+
+    /**
+     * Creates a parser for {@code pattern}, a pattern of the legacy (Ruby-style) {@code TimestampFormatter}.
+     *
+     * @return the parser, or empty if the pattern or the default time zone is not one this class handles
+     */
+    public static Optional<FastTimestampParser> of(String pattern, String defaultZoneId, TimestampColumnParser fallback)
+    {
+        Optional<ZoneId> defaultZone = parseZoneId(defaultZoneId);
+        if (!defaultZone.isPresent()) {
+            return Optional.empty();
+        }
+
+        List<Field> fields = new ArrayList<>();
+        StringBuilder literals = new StringBuilder();
+        for (int i = 0; i < pattern.length(); i++) {
+            char c = pattern.charAt(i);
+            if (c != '%') {
+                if ("-:T ./".indexOf(c) < 0) {
+                    return Optional.empty();
+                }
+                fields.add(Field.LITERAL);
+                literals.append(c);
+                continue;
+            }
+            if (++i == pattern.length()) {
+                return Optional.empty();
+            }
+            switch (pattern.charAt(i)) {
+                case 'Y':
+                    fields.add(Field.YEAR);
+                    break;
+                case 'm':
+                    fields.add(Field.MONTH);
+                    break;
+                case 'd':
+                    fields.add(Field.DAY);
+                    break;
+                case 'H':
+                    fields.add(Field.HOUR);
+                    break;
+                case 'M':
+                    fields.add(Field.MINUTE);
+                    break;
+                case 'S':
+                    fields.add(Field.SECOND);
+                    break;
+                case 'N':
+                case 'L':
+                    fields.add(Field.FRACTION);
+                    break;
+                case 'z':
+                    fields.add(Field.OFFSET);
+                    break;
+                case ':':
+                    if (++i == pattern.length() || pattern.charAt(i) != 'z') {
+                        return Optional.empty();
+                    }
+                    fields.add(Field.OFFSET);
+                    break;
+                case 'F':
+                    fields.add(Field.YEAR);
+                    fields.add(Field.LITERAL);
+                    fields.add(Field.MONTH);
+                    fields.add(Field.LITERAL);
+                    fields.add(Field.DAY);
+                    literals.append("--");
+                    break;
+                case 'T':
+                    fields.add(Field.HOUR);
+                    fields.add(Field.LITERAL);
+                    fields.add(Field.MINUTE);
+                    fields.add(Field.LITERAL);
+                    fields.add(Field.SECOND);
+                    literals.append("::");
+                    break;
+                default:
+                    return Optional.empty();
+            }
+        }
+        if (!isSupported(fields)) {
+            return Optional.empty();
+        }
+
+        return Optional.of(new FastTimestampParser(fields.toArray(new Field[0]), literals.toString().toCharArray(),
+                defaultZone.get(), fallback));
+    }
+
+    @Override
+    public Instant parse(String value)
+            throws DataException
+    {
+        Instant instant = parseCanonical(value);
+        return instant != null ? instant : fallback.parse(value);
+    }
+
+    /**
+     * @return the instant, or null if the value is not in the canonical form of the pattern
+     */
+    Instant parseCanonical(CharSequence value)
+    {
+        final int length = value.length();
+        int pos = 0;
+        int literal = 0;
+        int year = 0;
+        int month = 0;
+        int day = 0;
+        int hour = 0;
+        int minute = 0;
+        int second = 0;
+        int nano = 0;
+        boolean hasOffset = false;
+        int offsetSeconds = 0;
+
+        for (Field field : fields) {
+            switch (field) {
+                case YEAR:
+                    year = digits(value, pos, 4);
+                    pos += 4;
+                    break;
+                case MONTH:
+                    month = digits(value, pos, 2);
+                    pos += 2;
+                    break;
+                case DAY:
+                    day = digits(value, pos, 2);
+                    pos += 2;
+                    break;
+                case HOUR:
+                    hour = digits(value, pos, 2);
+                    pos += 2;
+                    break;
+                case MINUTE:
+                    minute = digits(value, pos, 2);
+                    pos += 2;
+                    break;
+                case SECOND:
+                    second = digits(value, pos, 2);
+                    pos += 2;
+                    break;
+                case FRACTION: {
+                    int start = pos;
+                    while (pos < length && pos - start <= 9 && isDigit(value.charAt(pos))) {
+                        nano = nano * 10 + (value.charAt(pos) - '0');
+                        pos++;
+                    }
+                    int count = pos - start;
+                    if (count == 0 || count > 9) {
+                        return null;
+                    }
+                    for (int i = count; i < 9; i++) {
+                        nano *= 10;
+                    }
+                    break;
+                }
+                case OFFSET: {
+                    if (pos >= length) {
+                        return null;
+                    }
+                    char sign = value.charAt(pos);
+                    if (sign == 'Z') {
+                        pos++;
+                    }
+                    else if (sign == '+' || sign == '-') {
+                        int hours = digits(value, pos + 1, 2);
+                        int minutes;
+                        if (pos + 3 < length && value.charAt(pos + 3) == ':') {
+                            minutes = digits(value, pos + 4, 2);
+                            pos += 6;
+                        }
+                        else {
+                            minutes = digits(value, pos + 3, 2);
+                            pos += 5;
+                        }
+                        if (hours < 0 || hours > 18 || minutes < 0 || minutes > 59 || (hours == 18 && minutes > 0)) {
+                            return null;
+                        }
+                        offsetSeconds = (hours * 3600 + minutes * 60) * (sign == '-' ? -1 : 1);
+                    }
+                    else {
+                        return null;
+                    }
+                    hasOffset = true;
+                    break;
+                }
+                default:
+                    if (pos >= length || value.charAt(pos) != literals[literal]) {
+                        return null;
+                    }
+                    pos++;
+                    literal++;
+                    break;
+            }
+            if (pos > length) {
+                return null;
+            }
+        }
+
+        if (pos != length
+                || year < 1 || month < 1 || month > 12 || day < 1 || day > lengthOfMonth(year, month)
+                || hour < 0 || hour > 23 || minute < 0 || minute > 59 || second < 0 || second > 59) {
+            return null;
+        }
+
+        long epochSecond = daysFromCivil(year, month, day) * 86400L + hour * 3600 + minute * 60 + second;
+        if (hasOffset) {
+            epochSecond -= offsetSeconds;
+        }
+        else if (defaultZoneRules == null) {
+            epochSecond -= defaultOffsetSeconds;
+        }
+        else {
+            List<ZoneOffset> offsets = defaultZoneRules.getValidOffsets(LocalDateTime.of(year, month, day, hour, minute, second));
+            if (offsets.size() != 1) {
+                return null;
+            }
+            epochSecond -= offsets.get(0).getTotalSeconds();
+        }
+        return Instant.ofEpochSecond(epochSecond, nano);
+    }
+
+    // A date and, if any, a time of hours, minutes and seconds are required, so that
+    // 'default_date' never applies. The fraction must follow a non-digit field.
+    private static boolean isSupported(List<Field> fields)
+    {
+        int[] counts = new int[Field.values().length];
+        for (int i = 0; i < fields.size(); i++) {
+            Field field = fields.get(i);
+            counts[field.ordinal()]++;
+            if (field == Field.FRACTION && i + 1 < fields.size()
+                    && fields.get(i + 1) != Field.LITERAL && fields.get(i + 1) != Field.OFFSET) {
+                return false;
+            }
+        }
+        if (counts[Field.YEAR.ordinal()] != 1 || counts[Field.MONTH.ordinal()] != 1 || counts[Field.DAY.ordinal()] != 1) {
+            return false;
+        }
+        int time = counts[Field.HOUR.ordinal()];
+        if (time > 1 || counts[Field.MINUTE.ordinal()] != time || counts[Field.SECOND.ordinal()] != time) {
+            return false;
+        }
+        return counts[Field.FRACTION.ordinal()] <= time && counts[Field.OFFSET.ordinal()] <= 1;
+    }
+
+    // Time zones whose meaning is unambiguous: UTC, fixed offsets and region IDs.
+    private static Optional<ZoneId> parseZoneId(String zoneId)
+    {
+        if (zoneId.equals("UTC")) {
+            return Optional.of(ZoneOffset.UTC);
+        }
+        try {
+            if (OFFSET_ID.matcher(zoneId).matches()) {
+                return Optional.of(ZoneOffset.of(zoneId));
+            }
+            if (zoneId.indexOf('/') > 0) {
+                return Optional.of(ZoneId.of(zoneId));
+            }
+        }
+        catch (DateTimeException e) {
+            // Left to the fallback.
+        }
+        return Optional.empty();
+    }
+
+    private static int digits(CharSequence value, int pos, int count)
+    {
+        if (pos + count > value.length()) {
+            return -1;
+        }
+        int result = 0;
+        for (int i = pos; i < pos + count; i++) {
+            char c = value.charAt(i);
+            if (!isDigit(c)) {
+                return -1;
+            }
+            result = result * 10 + (c - '0');
+        }
+        return result;
+    }
+
+    private static boolean isDigit(char c)
+    {
+        return c >= '0' && c <= '9';
+    }
+
+    private static int lengthOfMonth(int year, int month)
+    {
+        switch (month) {
+            case 2:
+                return (year % 4 == 0 && (year % 100 != 0 || year % 400 == 0)) ? 29 : 28;
+            case 4:
+            case 6:
+            case 9:
+            case 11:
+                return 30;
+            default:
+                return 31;
+        }
+    }
+
+    // Days since 1970-01-01 of a proleptic Gregorian date, without allocating a LocalDate.
+    private static long daysFromCivil(int year, int month, int day)
+    {
+        int y = month <= 2 ? year - 1 : year;
+        int era = y / 400;  // year is positive
+        int yearOfEra = y - era * 400;
+        int dayOfYear = (153 * (month + (month > 2 ? -3 : 9)) + 2) / 5 + day - 1;
+        int dayOfEra = yearOfEra * 365 + yearOfEra / 4 - yearOfEra / 100 + dayOfYear;
+        return era * 146097L + dayOfEra - 719468;
+    }
+}
@@ -0,0 +1,405 @@
+package org.embulk.parser.jsonpath;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.node.BinaryNode;
+import org.embulk.parser.jsonpath.ParserMetrics.SkipReason;
+import org.embulk.spi.DataException;
+import org.embulk.spi.FileInput;
+import org.embulk.util.file.FileInputInputStream;
+
+import java.io.InputStream;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+/**
+ * Reads and parses the files of a task on a helper thread, ahead of the task thread which materializes the records.
+ *
+ * The helper thread queues the records of each file in batches, together with the invalid JSON it skips.
+ * The queue holds at most a given number of bytes of heap, as estimated from the trees of the records and
+ * a fixed cost of every other item, except for a single item which is larger.
+ * The task thread takes the files one by one in their order, and passes the records and the skips
+ * to its own emitter and {@link InvalidRecordHandler} in the order they were met, so that records, skipped records
+ * and errors come as if the files were read on the task thread.
+ */
+public class FilePrefetcher
+        implements AutoCloseable
+{
+    static final int BATCH_SIZE = 1000;
+    // Estimated heap bytes of a skip, most of which is the stack trace of its exception, and of the other items
+    static final long SKIP_BYTES = 2048;
+    static final long ITEM_BYTES = 64;
+
+    // Parses one file on the helper thread, passing the records to the emitter and invalid JSON to the handler.
+    interface FileParser
+    {
+        void parse(InputStream file, Consumer<JsonNode> emitter, InvalidRecordHandler invalidRecords);
+    }
+
+    private final FileInput input;
+    private final long bufferBytes;
+    private final FileParser parser;
+    private final InvalidRecordHandler invalidRecords;
+    private final ExecutorService executor;
+    private final Deque<Queued> queue = new ArrayDeque<>();
+    private long queuedBytes;
+    private boolean started;
+
+    public FilePrefetcher(FileInput input, long bufferBytes, FileParser parser, InvalidRecordHandler invalidRecords)
+    {
+        this.input = input;
+        this.bufferBytes = bufferBytes;
+        this.parser = parser;
+        this.invalidRecords = invalidRecords;
+        this.executor = Executors.newSingleThreadExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "embulk-parser-jsonpath-prefetch");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    /**
+     * Waits for the next file. The first call starts reading the files.
+     *
+     * @return empty if there are no more files
+     */
+    public Optional<PrefetchedFile> nextFile()
+    {
+        if (!started) {
+            started = true;
+            executor.submit(this::readFiles);
+        }
+        final Object item = take();
+        if (item instanceof FileStart) {
+            return Optional.of(new PrefetchedFile((FileStart) item));
+        }
+        return Optional.empty();
+    }
+
+    @Override
+    public void close()
+    {
+        executor.shutdownNow();
+        try {
+            executor.awaitTermination(1, TimeUnit.MINUTES);
+        }
+        catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * A file which is being read on the helper thread.
+     */
+    public final class PrefetchedFile
+    {
+        private final FileStart start;
+        private long bytes;
+
+        private PrefetchedFile(FileStart start)
+        {
+            this.start = start;
+        }
+
+        public int getIndex()
+        {
+            return start.index;
+        }
+
+        /**
+         * The name of the file for logging.
+         */
+        public Optional<String> getName()
+        {
+            return start.name;
+        }
+
+        /**
+         * The number of bytes read from the file, which is known after {@link #emit(Consumer)}.
+         */
+        public long getBytes()
+        {
+            return bytes;
+        }
+
+        /**
+         * Passes the records of the file to the emitter, and invalid JSON to the {@link InvalidRecordHandler} of the task.
+         *
+         * @throws RuntimeException which the helper thread failed with
+         */
+        public void emit(Consumer<JsonNode> emitter)
+        {
+            while (true) {
+                final Object item = take();
+                if (item instanceof Batch) {
+                    for (JsonNode record : ((Batch) item).records) {
+                        emitter.accept(record);
+                    }
+                }
+                else if (item instanceof Skip) {
+                    final Skip skip = (Skip) item;
+                    invalidRecords.skipOrThrow(skip.cause, skip.reason, skip.record);
+                }
+                else if (item instanceof FileEnd) {
+                    bytes = ((FileEnd) item).bytes;
+                    return;
+                }
+                else {
+                    throw new IllegalStateException("Unexpected " + item);
+                }
+            }
+        }
+    }
+
+    private void readFiles()
+    {
+        try (final FileInputInputStream is = new FileInputInputStream(input)) {
+            for (int fileIndex = 0; is.nextFile(); fileIndex++) {
+                put(new FileStart(fileIndex, input.hintOfCurrentInputFileNameForLogging()), ITEM_BYTES);
+                // parse(InputStream json) cause is.close(), so wrapping the original is into a temporary InputStream.
+                final NonClosingInputStream file = new NonClosingInputStream(is);
+                final QueueingInvalidRecordHandler fileInvalidRecords = new QueueingInvalidRecordHandler(file);
+                fileInvalidRecords.startFile(fileIndex);
+                parser.parse(file, fileInvalidRecords::add, fileInvalidRecords);
+                fileInvalidRecords.flush();
+                put(new FileEnd(file.getCount()), ITEM_BYTES);
+            }
+            put(Done.INSTANCE, ITEM_BYTES);
+        }
+        catch (InterruptedException | PrefetchCancelledException e) {
+            // pass (closed by the task thread)
+        }
+        catch (RuntimeException | Error e) {
+            synchronized (queue) {
+                queue.add(new Queued(new Failure(e), 0));
+                queue.notifyAll();
+            }
+        }
+    }
+
+    private void put(Object item, long bytes)
+            throws InterruptedException
+    {
+        synchronized (queue) {
+            while (queuedBytes > 0 && queuedBytes + bytes > bufferBytes) {
+                queue.wait();
+            }
+            queue.add(new Queued(item, bytes));
+            queuedBytes += bytes;
+            queue.notifyAll();
+        }
+    }
+
+    private Object take()
+    {
+        final Object item;
+        synchronized (queue) {
+            try {
+                while (queue.isEmpty()) {
+                    queue.wait();
+                }
+            }
+            catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new RuntimeException(e);
+            }
+            final Queued queued = queue.poll();
+            item = queued.item;
+            queuedBytes -= queued.bytes;
+            queue.notifyAll();
+        }
+        if (item instanceof Failure) {
+            final Throwable cause = ((Failure) item).cause;
+            if (cause instanceof Error) {
+                throw (Error) cause;
+            }
+            throw (RuntimeException) cause;
+        }
+        return item;
+    }
+
+    // Batches the records of a file, and queues the skips in between on behalf of the handler of the task.
+    private final class QueueingInvalidRecordHandler
+            extends InvalidRecordHandler
+    {
+        private final NonClosingInputStream file;
+        private List<JsonNode> batch = new ArrayList<>(BATCH_SIZE);
+        private long batchBytes;
+
+        private QueueingInvalidRecordHandler(NonClosingInputStream file)
+        {
+            super(false, new ParserMetrics(), Optional.empty());
+            this.file = file;
+        }
+
+        @Override
+        public boolean isWriting()
+        {
+            return invalidRecords.isWriting();
+        }
+
+        @Override
+        public void skipOrThrow(DataException cause, SkipReason reason, InvalidRecord record)
+        {
+            flush();
+            final long bytes = SKIP_BYTES + (record.getValue().isPresent() ? estimateHeapBytes(record.getValue().get()) : 0);
+            putUninterruptibly(new Skip(cause, reason, record), bytes);
+        }
+
+        private void add(JsonNode record)
+        {
+            batch.add(record);
+            batchBytes += estimateHeapBytes(record);
+            if (batch.size() >= BATCH_SIZE) {
+                flush();
+            }
+        }
+
+        private void flush()
+        {
+            if (batch.isEmpty()) {
+                return;
+            }
+            putUninterruptibly(new Batch(batch), batchBytes);
+            batch = new ArrayList<>(BATCH_SIZE);
+            batchBytes = 0;
+        }
+
+        // The parser does not let an InterruptedException through, so it is carried by an unchecked exception.
+        private void putUninterruptibly(Object item, long bytes)
+        {
+            try {
+                put(item, bytes);
+            }
+            catch (InterruptedException e) {
+                throw new PrefetchCancelledException();
+            }
+        }
+    }
+
+    private static final class PrefetchCancelledException
+            extends RuntimeException
+    {
+    }
+
+    // An estimate of the heap taken by a tree of Jackson nodes on a 64-bit JVM with compressed references
+    static long estimateHeapBytes(JsonNode node)
+    {
+        switch (node.getNodeType()) {
+            case OBJECT: {
+                // The node and its LinkedHashMap, and for each field an entry, a slot of the table and the name
+                long bytes = 80;
+                final Iterator<Map.Entry<String, JsonNode>> fields = node.fields();
+                while (fields.hasNext()) {
+                    final Map.Entry<String, JsonNode> field = fields.next();
+                    bytes += 48 + stringBytes(field.getKey()) + estimateHeapBytes(field.getValue());
+                }
+                return bytes;
+            }
+            case ARRAY: {
+                // The node, its ArrayList and the array of the list
+                long bytes = 56;
+                for (JsonNode element : node) {
+                    bytes += 4 + estimateHeapBytes(element);
+                }
+                return bytes;
+            }
+            case STRING:
+                return 16 + stringBytes(node.textValue());
+            case NUMBER:
+                return node.isBigInteger() || node.isBigDecimal() ? 80 : 24;
+            case BINARY:
+                return 32 + ((BinaryNode) node).binaryValue().length;
+            default:
+                // Booleans, null and missing nodes are shared. POJO nodes are not made by the parser.
+                return 0;
+        }
+    }
+
+    // A String and its char[]
+    private static long stringBytes(String value)
+    {
+        return 40 + 2L * value.length();
+    }
+
+    private static final class Queued
+    {
+        private final Object item;
+        private final long bytes;
+
+        private Queued(Object item, long bytes)
+        {
+            this.item = item;
+            this.bytes = bytes;
+        }
+    }
+
+    private static final class FileStart
+    {
+        private final int index;
+        private final Optional<String> name;
+
+        private FileStart(int index, Optional<String> name)
+        {
+            this.index = index;
+            this.name = name;
+        }
+    }
+
+    private static final class FileEnd
+    {
+        private final long bytes;
+
+        private FileEnd(long bytes)
+        {
+            this.bytes = bytes;
+        }
+    }
+
+    private static final class Batch
+    {
+        private final List<JsonNode> records;
+
+        private Batch(List<JsonNode> records)
+        {
+            this.records = records;
+        }
+    }
+
+    private static final class Skip
+    {
+        private final DataException cause;
+        private final SkipReason reason;
+        private final InvalidRecord record;
+
+        private Skip(DataException cause, SkipReason reason, InvalidRecord record)
+        {
+            this.cause = cause;
+            this.reason = reason;
+            this.record = record;
+        }
+    }
+
+    private static final class Failure
+    {
+        private final Throwable cause;
+
+        private Failure(Throwable cause)
+        {
+            this.cause = cause;
+        }
+    }
+
+    private enum Done
+    {
+        INSTANCE
+    }
+}
@@ -0,0 +1,71 @@
+package org.embulk.parser.jsonpath;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import org.embulk.spi.Column;
+
+import java.util.Optional;
+
+/**
+ * Where an invalid record came from, for the invalid record output: the index of its file in the task,
+ * and either the record value or the range of its bytes in the file.
+ */
+public final class InvalidRecord
+{
+    private final int fileIndex;
+    private final Optional<JsonNode> value;
+    private final long from;
+    private final long to;
+    private final Optional<Column> column;
+
+    private InvalidRecord(int fileIndex, Optional<JsonNode> value, long from, long to, Optional<Column> column)
+    {
+        this.fileIndex = fileIndex;
+        this.value = value;
+        this.from = from;
+        this.to = to;
+        this.column = column;
+    }
+
+    public static InvalidRecord ofValue(int fileIndex, JsonNode value, Optional<Column> column)
+    {
+        return new InvalidRecord(fileIndex, Optional.of(value), -1, -1, column);
+    }
+
+    /**
+     * A range of bytes from {@code from} until {@code to}, either of which is -1 when it is not known.
+     */
+    public static InvalidRecord ofRange(int fileIndex, long from, long to, Optional<Column> column)
+    {
+        return new InvalidRecord(fileIndex, Optional.empty(), from, to, column);
+    }
+
+    public static InvalidRecord ofFile(int fileIndex)
+    {
+        return new InvalidRecord(fileIndex, Optional.empty(), -1, -1, Optional.empty());
+    }
+
+    public int getFileIndex()
+    {
+        return fileIndex;
+    }
+
+    public Optional<JsonNode> getValue()
+    {
+        return value;
+    }
+
+    public long getFrom()
+    {
+        return from;
+    }
+
+    public long getTo()
+    {
+        return to;
+    }
+
+    public Optional<Column> getColumn()
+    {
+        return column;
+    }
+}
@@ -0,0 +1,90 @@
+package org.embulk.parser.jsonpath;
+
+import org.embulk.parser.jsonpath.ParserMetrics.SkipReason;
+import org.embulk.spi.DataException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.Optional;
+
+import static java.util.Locale.ENGLISH;
+
+/**
+ * Stops the task at an invalid record, or skips it: counts it in the metrics, logs the first ones of each reason,
+ * and writes it to the invalid record output if there is one.
+ */
+public class InvalidRecordHandler
+        implements AutoCloseable
+{
+    // Skipped records logged one by one for each reason in a task. The others are only counted.
+    static final int LOGGED_SKIPS_PER_REASON = 10;
+
+    private static final Logger logger = LoggerFactory.getLogger(InvalidRecordHandler.class);
+
+    private final boolean stopOnInvalidRecord;
+    private final ParserMetrics metrics;
+    private final Optional<InvalidRecordWriter> output;
+    private volatile int fileIndex;
+
+    public InvalidRecordHandler(boolean stopOnInvalidRecord, ParserMetrics metrics, Optional<InvalidRecordWriter> output)
+    {
+        this.stopOnInvalidRecord = stopOnInvalidRecord;
+        this.metrics = metrics;
+        this.output = output;
+    }
+
+    /**
+     * Sets the index of the file being read, which is the file of the records skipped without an explicit one.
+     */
+    public void startFile(int fileIndex)
+    {
+        this.fileIndex = fileIndex;
+    }
+
+    public int getFileIndex()
+    {
+        return fileIndex;
+    }
+
+    /**
+     * Whether skipped records are written, and worth describing with {@link #skipOrThrow(DataException, SkipReason, InvalidRecord)}.
+     */
+    public boolean isWriting()
+    {
+        return output.isPresent();
+    }
+
+    public void skipOrThrow(DataException cause, SkipReason reason)
+    {
+        skipOrThrow(cause, reason, InvalidRecord.ofFile(fileIndex));
+    }
+
+    public void skipOrThrow(DataException cause, SkipReason reason, InvalidRecord record)
+    {
+        if (stopOnInvalidRecord) {
+            throw cause;
+        }
+        final long count = metrics.addSkipped(reason);
+        if (count <= LOGGED_SKIPS_PER_REASON) {
+            logger.warn(String.format(ENGLISH, "Skipped invalid record (%s)", cause));
+            if (count == LOGGED_SKIPS_PER_REASON) {
+                logger.warn(String.format(ENGLISH, "Further records skipped for %s are not logged one by one, but counted in the totals per file and per task.",
+                        reason));
+            }
+        }
+        if (output.isPresent()) {
+            output.get().write(record, reason, cause);
+        }
+    }
+
+    /**
+     * Closes the invalid record output, waiting for the skipped records to be written.
+     */
+    @Override
+    public void close()
+    {
+        if (output.isPresent()) {
+            output.get().close();
+        }
+    }
+}
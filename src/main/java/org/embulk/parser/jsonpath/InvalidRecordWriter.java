@@ -0,0 +1,191 @@
+package org.embulk.parser.jsonpath;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ArrayNode;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import org.embulk.parser.jsonpath.ParserMetrics.SkipReason;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Locale;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+
+import static java.lang.String.format;
+
+/**
+ * Writes invalid records to a local JSON Lines file on a background thread, so that skipping a record
+ * only costs putting it on a queue.
+ *
+ * Each line has {@code file} (the index of the file in the task), {@code reason}, {@code column} (the column
+ * which failed, or null), {@code error}, and either {@code record} (the record value) or {@code range}
+ * (the byte offsets from and until, -1 if not known) when the record could not be read as a value.
+ */
+public class InvalidRecordWriter
+        implements AutoCloseable
+{
+    private static final ObjectMapper OBJECT_MAPPER = new ObjectMapper();
+    private static final int QUEUE_CAPACITY = 1024;
+    private static final Entry END = new Entry(null, null, null);
+
+    private final Path path;
+    private final Writer writer;
+    private final BlockingQueue<Entry> queue = new ArrayBlockingQueue<>(QUEUE_CAPACITY);
+    private final Thread thread;
+    private volatile IOException failure;
+
+    private InvalidRecordWriter(Path path, Writer writer)
+    {
+        this.path = path;
+        this.writer = writer;
+        this.thread = new Thread(this::drain, "embulk-parser-jsonpath-invalid-records");
+        this.thread.setDaemon(true);
+        this.thread.start();
+    }
+
+    /**
+     * Creates the file. An existing file is never overwritten.
+     *
+     * @throws java.nio.file.FileAlreadyExistsException if the file exists
+     */
+    public static InvalidRecordWriter open(Path path)
+            throws IOException
+    {
+        return new InvalidRecordWriter(path, Files.newBufferedWriter(path, StandardCharsets.UTF_8,
+                StandardOpenOption.CREATE_NEW, StandardOpenOption.WRITE));
+    }
+
+    public Path getPath()
+    {
+        return path;
+    }
+
+    public void write(InvalidRecord record, SkipReason reason, Throwable error)
+    {
+        put(new Entry(record, reason, error));
+    }
+
+    /**
+     * Waits for the queued records to be written, and closes the file.
+     *
+     * @throws UncheckedIOException if a record could not be written
+     */
+    @Override
+    public void close()
+    {
+        put(END);
+        boolean interrupted = false;
+        while (thread.isAlive()) {
+            try {
+                thread.join();
+            }
+            catch (InterruptedException e) {
+                interrupted = true;
+            }
+        }
+        try {
+            writer.close();
+        }
+        catch (IOException e) {
+            if (failure == null) {
+                failure = e;
+            }
+        }
+        if (interrupted) {
+            Thread.currentThread().interrupt();
+        }
+        if (failure != null) {
+            throw new UncheckedIOException(format(Locale.ENGLISH, "Failed to write invalid records to '%s'", path), failure);
+        }
+    }
+
+    private void put(Entry entry)
+    {
+        boolean interrupted = false;
+        while (true) {
+            try {
+                queue.put(entry);
+                break;
+            }
+            catch (InterruptedException e) {
+                interrupted = true;
+            }
+        }
+        if (interrupted) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    // After a failure, entries are still taken from the queue and dropped, so that writers are never blocked.
+    private void drain()
+    {
+        while (true) {
+            final Entry entry;
+            try {
+                entry = queue.take();
+            }
+            catch (InterruptedException e) {
+                continue;
+            }
+            if (entry == END) {
+                break;
+            }
+            if (failure != null) {
+                continue;
+            }
+            try {
+                writer.write(OBJECT_MAPPER.writeValueAsString(toJson(entry)));
+                writer.write('\n');
+                if (queue.isEmpty()) {
+                    writer.flush();
+                }
+            }
+            catch (IOException e) {
+                failure = e;
+            }
+        }
+    }
+
+    static ObjectNode toJson(Entry entry)
+    {
+        final InvalidRecord record = entry.record;
+        final ObjectNode json = OBJECT_MAPPER.createObjectNode();
+        json.put("file", record.getFileIndex());
+        json.put("reason", entry.reason.toString().toLowerCase(Locale.ENGLISH));
+        if (record.getColumn().isPresent()) {
+            json.put("column", record.getColumn().get().getName());
+        }
+        else {
+            json.putNull("column");
+        }
+        json.put("error", String.valueOf(entry.error.getMessage()));
+        if (record.getValue().isPresent()) {
+            json.set("record", record.getValue().get());
+        }
+        else {
+            ArrayNode range = json.putArray("range");
+            range.add(record.getFrom());
+            range.add(record.getTo());
+        }
+        return json;
+    }
+
+    static final class Entry
+    {
+        private final InvalidRecord record;
+        private final SkipReason reason;
+        private final Throwable error;
+
+        Entry(InvalidRecord record, SkipReason reason, Throwable error)
+        {
+            this.record = record;
+            this.reason = reason;
+            this.error = error;
+        }
+    }
+}
@@ -0,0 +1,153 @@
+package org.embulk.parser.jsonpath;
+
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.node.NullNode;
+import com.jayway.jsonpath.InvalidJsonException;
+import com.jayway.jsonpath.JsonPath;
+import com.jayway.jsonpath.PathNotFoundException;
+import org.embulk.parser.jsonpath.JsonpathParserPlugin.Format;
+import org.embulk.parser.jsonpath.JsonpathParserPlugin.StreamingRecordReader;
+import org.embulk.parser.jsonpath.ParserMetrics.SkipReason;
+import org.embulk.spi.DataException;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Locale;
+import java.util.Optional;
+import java.util.function.Consumer;
+
+import static java.lang.String.format;
+import static org.embulk.parser.jsonpath.JsonpathParserPlugin.JSON_PATH_CONFIG;
+import static org.embulk.parser.jsonpath.JsonpathParserPlugin.OBJECT_MAPPER;
+import static org.embulk.parser.jsonpath.JsonpathParserPlugin.errorOffset;
+
+/**
+ * Builds each document as a Jackson tree and evaluates the root on it with Jayway, so that any JSONPath is supported.
+ */
+public class JaywayJsonEngine
+        implements JsonEngine
+{
+    // Documents are read whole, so the resynchronizer follows no root within them.
+    private static final SimpleJsonPath DOCUMENT_PATH = SimpleJsonPath.parse("$").get();
+
+    private final String jsonRoot;
+    private final JsonPath rootPath;
+    private final Format format;
+
+    public JaywayJsonEngine(String jsonRoot, Format format)
+    {
+        this.jsonRoot = jsonRoot;
+        this.rootPath = JsonPath.compile(jsonRoot);
+        this.format = format;
+    }
+
+    @Override
+    public boolean isStreaming()
+    {
+        return false;
+    }
+
+    @Override
+    public void parseFile(InputStream file, Consumer<JsonNode> emitter, StreamingRecordReader streamingReader, ParserMetrics metrics,
+            InvalidRecordHandler invalidRecords)
+    {
+        if (format != Format.JSON) {
+            parseDocuments(file, emitter, metrics, invalidRecords);
+            return;
+        }
+
+        final long start = System.nanoTime();
+        final JsonNode json;
+        try {
+            json = JsonPath.using(JSON_PATH_CONFIG).parse(file).read(jsonRoot, JsonNode.class);
+        }
+        catch (PathNotFoundException e) {
+            invalidRecords.skipOrThrow(new DataException(format(Locale.ENGLISH,
+                    "Failed to get root json path='%s'", jsonRoot)), SkipReason.ROOT_NOT_FOUND);
+            return;
+        }
+        catch (InvalidJsonException e) {
+            invalidRecords.skipOrThrow(new DataException(e), SkipReason.INVALID_JSON,
+                    InvalidRecord.ofRange(invalidRecords.getFileIndex(), 0, errorOffset(e), Optional.empty()));
+            return;
+        }
+        finally {
+            metrics.addParseNanos(System.nanoTime() - start);
+        }
+
+        emitRoot(json, emitter);
+    }
+
+    // Reads documents which follow one another in a file (JSON Lines, concatenated JSON or a binary format) with a single parser,
+    // applying the root to each of them. A malformed document of JSON Lines is skipped up to the next line.
+    private void parseDocuments(InputStream file, Consumer<JsonNode> emitter, ParserMetrics metrics, InvalidRecordHandler invalidRecords)
+    {
+        // The start of the current document, from which an invalid document is written to the invalid record output
+        long documentStart = 0;
+        // The end of the last document which was read, after which a malformed line of JSON Lines starts
+        long documentEnd = 0;
+        final ParserMetrics.Sampler sampler = new ParserMetrics.Sampler();
+        try (final RootArrayResynchronizer resync = new RootArrayResynchronizer(format.getJsonFactory(), DOCUMENT_PATH, file)) {
+            while (true) {
+                try {
+                    while (resync.getParser().nextToken() != null) {
+                        final JsonParser parser = resync.getParser();
+                        if (invalidRecords.isWriting()) {
+                            documentStart = parser.getTokenLocation().getByteOffset();
+                        }
+                        final boolean timed = sampler.next();
+                        final long start = timed ? System.nanoTime() : 0;
+                        JsonNode document = OBJECT_MAPPER.readTree(parser);
+                        documentEnd = parser.getCurrentLocation().getByteOffset();
+                        final JsonNode json;
+                        try {
+                            json = rootPath.read(document != null ? document : NullNode.getInstance(), JSON_PATH_CONFIG);
+                        }
+                        catch (PathNotFoundException e) {
+                            invalidRecords.skipOrThrow(new DataException(format(Locale.ENGLISH,
+                                    "Failed to get root json path='%s'", jsonRoot)), SkipReason.ROOT_NOT_FOUND);
+                            continue;
+                        }
+                        finally {
+                            if (timed) {
+                                metrics.addParseNanos(sampler.scale(System.nanoTime() - start));
+                            }
+                        }
+                        emitRoot(json, emitter);
+                    }
+                    return;
+                }
+                catch (IOException e) {
+                    if (format == Format.JSONL && e instanceof JsonProcessingException) {
+                        resync.resynchronizeLine(documentEnd);
+                        invalidRecords.skipOrThrow(new DataException(e), SkipReason.INVALID_JSON,
+                                InvalidRecord.ofRange(invalidRecords.getFileIndex(), resync.getSkippedFrom(), resync.getSkippedTo(), Optional.empty()));
+                        documentEnd = resync.getSkippedTo();
+                        continue;
+                    }
+                    invalidRecords.skipOrThrow(new DataException(e), SkipReason.INVALID_JSON,
+                            InvalidRecord.ofRange(invalidRecords.getFileIndex(), documentStart, resync.toFileOffset(errorOffset(e)), Optional.empty()));
+                    return;
+                }
+            }
+        }
+        catch (IOException e) {
+            invalidRecords.skipOrThrow(new DataException(e), SkipReason.INVALID_JSON,
+                    InvalidRecord.ofRange(invalidRecords.getFileIndex(), documentStart, errorOffset(e), Optional.empty()));
+        }
+    }
+
+    private static void emitRoot(JsonNode json, Consumer<JsonNode> emitter)
+    {
+        if (json.isArray()) {
+            for (JsonNode recordValue : json) {
+                emitter.accept(recordValue);
+            }
+        }
+        else {
+            emitter.accept(json);
+        }
+    }
+}
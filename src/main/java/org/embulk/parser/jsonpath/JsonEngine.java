@@ -0,0 +1,29 @@
+package org.embulk.parser.jsonpath;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import org.embulk.parser.jsonpath.JsonpathParserPlugin.StreamingRecordReader;
+
+import java.io.InputStream;
+import java.util.function.Consumer;
+
+/**
+ * A backend which reads the records of the root from a file: a source of JSON documents together with an evaluator
+ * of the root path on them. The engine of a task is chosen by {@code json_engine}.
+ *
+ * Each engine must pass the same records and skips for the same file, so that engines can be switched freely,
+ * except that an engine may recover from malformed JSON where another skips the rest of the file.
+ */
+public interface JsonEngine
+{
+    /**
+     * Whether records are passed to a {@link StreamingRecordReader} at their first token instead of to the emitter as values.
+     */
+    boolean isStreaming();
+
+    /**
+     * Reads one file. Records are passed to the reader if the engine is streaming, and to the emitter otherwise.
+     * Invalid JSON and documents without the root are passed to the handler.
+     */
+    void parseFile(InputStream file, Consumer<JsonNode> emitter, StreamingRecordReader streamingReader, ParserMetrics metrics,
+            InvalidRecordHandler invalidRecords);
+}
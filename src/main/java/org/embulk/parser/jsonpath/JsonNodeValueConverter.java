@@ -0,0 +1,64 @@
+package org.embulk.parser.jsonpath;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import org.embulk.util.json.JsonParser;
+import org.msgpack.value.Value;
+import org.msgpack.value.ValueFactory;
+
+import java.util.Iterator;
+import java.util.Map;
+
+/**
+ * Builds a msgpack {@link Value} for a json column directly from a {@link JsonNode},
+ * producing the same value as serializing the node and parsing it back with {@link JsonParser}.
+ */
+public class JsonNodeValueConverter
+{
+    private static final JsonParser JSON_PARSER = new JsonParser();
+
+    private JsonNodeValueConverter() {}
+
+    public static Value toValue(JsonNode node)
+    {
+        switch (node.getNodeType()) {
+            case NULL:
+            case MISSING:
+                return ValueFactory.newNil();
+            case BOOLEAN:
+                return ValueFactory.newBoolean(node.booleanValue());
+            case STRING:
+                return ValueFactory.newString(node.textValue());
+            case NUMBER:
+                if (node.isBigInteger()) {
+                    return ValueFactory.newInteger(node.bigIntegerValue());
+                }
+                else if (node.isIntegralNumber()) {
+                    return ValueFactory.newInteger(node.longValue());
+                }
+                return ValueFactory.newFloat(node.doubleValue());
+            case ARRAY: {
+                Value[] elements = new Value[node.size()];
+                for (int i = 0; i < elements.length; i++) {
+                    elements[i] = toValue(node.get(i));
+                }
+                return ValueFactory.newArray(elements, true);
+            }
+            case OBJECT: {
+                Value[] kvs = new Value[node.size() * 2];
+                int i = 0;
+                for (Iterator<Map.Entry<String, JsonNode>> fields = node.fields(); fields.hasNext(); ) {
+                    Map.Entry<String, JsonNode> field = fields.next();
+                    kvs[i++] = ValueFactory.newString(field.getKey());
+                    kvs[i++] = toValue(field.getValue());
+                }
+                return ValueFactory.newMap(kvs, true);
+            }
+            case BINARY:
+                // Binary values of Smile and CBOR, which have no JSON type, become base64 strings as in their JSON text.
+                return ValueFactory.newString(node.asText());
+            default:
+                // POJO nodes are not produced by the parsers; keep the text round trip for them.
+                return JSON_PARSER.parse(node.toString());
+        }
+    }
+}
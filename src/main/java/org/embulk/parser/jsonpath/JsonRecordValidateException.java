@@ -2,9 +2,21 @@ package org.embulk.parser.jsonpath;
 
 import org.embulk.spi.DataException;
 
+import java.util.Locale;
+
+/**
+ * An invalid record. It has no stack trace, as it is thrown for each invalid record and usually skipped.
+ */
 public class JsonRecordValidateException
         extends DataException
 {
+    static final int MAX_VALUE_LENGTH = 256;
+
+    // Set until the message is formatted
+    private String format;
+    private Object[] values;
+    private String message;
+
     public JsonRecordValidateException(String message)
     {
         super(message);
@@ -19,4 +31,56 @@ public class JsonRecordValidateException
     {
         super(cause);
     }
+
+    private JsonRecordValidateException(String format, Object[] values, Throwable cause)
+    {
+        super((String) null, cause);
+        this.format = format;
+        this.values = values;
+    }
+
+    /**
+     * An exception whose message is formatted only when it is used, with each value cut to {@value #MAX_VALUE_LENGTH} characters.
+     */
+    public static JsonRecordValidateException of(String format, Object... values)
+    {
+        return new JsonRecordValidateException(format, values, null);
+    }
+
+    /**
+     * Same as {@link #of(String, Object...)}, caused by {@code cause}.
+     */
+    public static JsonRecordValidateException of(Throwable cause, String format, Object... values)
+    {
+        return new JsonRecordValidateException(format, values, cause);
+    }
+
+    @Override
+    public synchronized String getMessage()
+    {
+        if (format != null) {
+            Object[] abbreviated = new Object[values.length];
+            for (int i = 0; i < values.length; i++) {
+                abbreviated[i] = abbreviate(String.valueOf(values[i]));
+            }
+            message = String.format(Locale.ENGLISH, format, abbreviated);
+            format = null;
+            values = null;
+        }
+        return message != null ? message : super.getMessage();
+    }
+
+    @Override
+    public synchronized Throwable fillInStackTrace()
+    {
+        return this;
+    }
+
+    static String abbreviate(String value)
+    {
+        if (value.length() <= MAX_VALUE_LENGTH) {
+            return value;
+        }
+        return value.substring(0, MAX_VALUE_LENGTH) + "...(" + value.length() + " characters)";
+    }
 }
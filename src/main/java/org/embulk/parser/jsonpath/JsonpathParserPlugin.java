@@ -1,17 +1,25 @@
 package org.embulk.parser.jsonpath;
 
+import com.fasterxml.jackson.annotation.JsonCreator;
+import com.fasterxml.jackson.annotation.JsonValue;
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonProcessingException;
 import com.fasterxml.jackson.databind.JsonNode;
-import com.fasterxml.jackson.databind.node.JsonNodeType;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.NullNode;
+import com.fasterxml.jackson.dataformat.cbor.CBORFactory;
+import com.fasterxml.jackson.dataformat.smile.SmileFactory;
 import com.jayway.jsonpath.Configuration;
-import com.jayway.jsonpath.InvalidJsonException;
+import com.jayway.jsonpath.InvalidPathException;
 import com.jayway.jsonpath.JsonPath;
-import com.jayway.jsonpath.PathNotFoundException;
 import com.jayway.jsonpath.spi.json.JacksonJsonNodeJsonProvider;
 import com.jayway.jsonpath.spi.mapper.JacksonMappingProvider;
 import org.embulk.config.ConfigException;
 import org.embulk.config.ConfigSource;
 import org.embulk.config.TaskSource;
-import org.embulk.spi.Column;
+import org.embulk.parser.jsonpath.ParserMetrics.SkipReason;
+import org.embulk.spi.BufferAllocator;
 import org.embulk.spi.DataException;
 import org.embulk.spi.Exec;
 import org.embulk.spi.FileInput;
@@ -34,15 +42,32 @@ import org.embulk.util.timestamp.TimestampFormatter;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.io.IOException;
 import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.lang.management.ManagementFactory;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
 import java.util.Collections;
-import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.Locale;
 import java.util.Map;
 import java.util.Optional;
+import java.util.UUID;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
 
 import static java.lang.String.format;
-import static java.util.Locale.ENGLISH;
 
 public class JsonpathParserPlugin
         implements ParserPlugin
@@ -54,11 +79,89 @@ public class JsonpathParserPlugin
             .addModule(new TypeModule())
             .build();
     private static final ConfigMapper CONFIG_MAPPER = CONFIG_MAPPER_FACTORY.createConfigMapper();
-    private static final Configuration JSON_PATH_CONFIG = Configuration
+    static final Configuration JSON_PATH_CONFIG = Configuration
             .builder()
             .mappingProvider(new JacksonMappingProvider())
             .jsonProvider(new JacksonJsonNodeJsonProvider())
             .build();
+    static final ObjectMapper OBJECT_MAPPER = new ObjectMapper();
+    private static final JsonFactory SMILE_FACTORY = new SmileFactory();
+    private static final JsonFactory CBOR_FACTORY = new CBORFactory();
+    // Numbers the runs of tasks in this JVM, for the names of their metrics and invalid record outputs
+    private static final AtomicLong RUN_SEQUENCE = new AtomicLong();
+    // Tells the invalid record outputs of this JVM from those of other runs and of executors on other hosts
+    private static final String JVM_ID = UUID.randomUUID().toString();
+
+    public enum Format
+    {
+        JSON, JSONL, CONCATENATED, SMILE, CBOR;
+
+        @JsonValue
+        @Override
+        public String toString()
+        {
+            return name().toLowerCase(Locale.ENGLISH);
+        }
+
+        @JsonCreator
+        public static Format fromString(String value)
+        {
+            for (Format format : values()) {
+                if (format.toString().equals(value)) {
+                    return format;
+                }
+            }
+            throw new ConfigException(format(Locale.ENGLISH,
+                    "Unknown format '%s'. Supported formats are json, jsonl, concatenated, smile and cbor", value));
+        }
+
+        /**
+         * Whether the documents are text JSON, in which malformed JSON can be skipped by looking at bytes.
+         */
+        public boolean isText()
+        {
+            return this != SMILE && this != CBOR;
+        }
+
+        /**
+         * The factory of parsers for the documents. Binary formats hold a sequence of documents like concatenated.
+         */
+        public JsonFactory getJsonFactory()
+        {
+            switch (this) {
+                case SMILE:
+                    return SMILE_FACTORY;
+                case CBOR:
+                    return CBOR_FACTORY;
+                default:
+                    return OBJECT_MAPPER.getFactory();
+            }
+        }
+    }
+
+    public enum JsonEngineType
+    {
+        JAYWAY, JACKSON_STREAMING;
+
+        @JsonValue
+        @Override
+        public String toString()
+        {
+            return name().toLowerCase(Locale.ENGLISH);
+        }
+
+        @JsonCreator
+        public static JsonEngineType fromString(String value)
+        {
+            for (JsonEngineType type : values()) {
+                if (type.toString().equals(value)) {
+                    return type;
+                }
+            }
+            throw new ConfigException(format(Locale.ENGLISH,
+                    "Unknown json_engine '%s'. Supported engines are jayway and jackson_streaming", value));
+        }
+    }
 
     public interface TypecastColumnOption
             extends Task
@@ -92,6 +195,51 @@ public class JsonpathParserPlugin
         @ConfigDefault("false")
         boolean getStopOnInvalidRecord();
 
+        @Config("invalid_record_output")
+        @ConfigDefault("null")
+        Optional<String> getInvalidRecordOutput();
+
+        @Config("format")
+        @ConfigDefault("\"json\"")
+        Format getFormat();
+
+        @Config("json_engine")
+        @ConfigDefault("null")
+        Optional<JsonEngineType> getJsonEngine();
+
+        // An alias of json_engine: jackson_streaming
+        @Config("streaming")
+        @ConfigDefault("false")
+        boolean getStreaming();
+
+        @Config("parallelism")
+        @ConfigDefault("1")
+        int getParallelism();
+
+        @Config("preserve_order")
+        @ConfigDefault("true")
+        boolean getPreserveOrder();
+
+        @Config("page_queue_size")
+        @ConfigDefault("0")
+        int getPageQueueSize();
+
+        @Config("prefetch")
+        @ConfigDefault("false")
+        boolean getPrefetch();
+
+        @Config("prefetch_buffer_bytes")
+        @ConfigDefault("67108864")
+        long getPrefetchBufferBytes();
+
+        @Config("split_root_array")
+        @ConfigDefault("false")
+        boolean getSplitRootArray();
+
+        @Config("split_chunk_bytes")
+        @ConfigDefault("8388608")
+        long getSplitChunkBytes();
+
         // From org.embulk.spi.time.TimestampParser.Task.
         @Config("default_timezone")
         @ConfigDefault("\"UTC\"")
@@ -106,6 +254,10 @@ public class JsonpathParserPlugin
         @Config("default_date")
         @ConfigDefault("\"1970-01-01\"")
         String getDefaultDate();
+
+        @Config("default_timestamp_cache_size")
+        @ConfigDefault("0")
+        int getDefaultTimestampCacheSize();
     }
 
     public interface JsonpathColumnOption
@@ -126,6 +278,14 @@ public class JsonpathParserPlugin
         @Config("date")
         @ConfigDefault("null")
         Optional<String> getDate();
+
+        @Config("timestamp_cache_size")
+        @ConfigDefault("null")
+        Optional<Integer> getTimestampCacheSize();
+
+        @Config("unit")
+        @ConfigDefault("null")
+        Optional<TimestampUnit> getUnit();
     }
 
     @Override
@@ -133,6 +293,37 @@ public class JsonpathParserPlugin
     {
         final PluginTask task = CONFIG_MAPPER.map(config, PluginTask.class);
         Schema schema = getSchemaConfig(task).toSchema();
+        newJsonEngine(task);
+        if (task.getSplitRootArray()) {
+            newStreamingRoot(task.getRoot());
+        }
+        if (task.getSplitRootArray() && task.getFormat() != Format.JSON) {
+            throw new ConfigException("'split_root_array' needs format 'json'");
+        }
+        if (task.getParallelism() < 1) {
+            throw new ConfigException(format(Locale.ENGLISH, "'parallelism' must be 1 or larger: %d", task.getParallelism()));
+        }
+        if (task.getSplitRootArray() && task.getParallelism() < 2) {
+            // On one thread, splitting only adds the copy of the file and the scan of its bytes.
+            throw new ConfigException("'split_root_array' needs 'parallelism' of 2 or larger");
+        }
+        if (task.getPageQueueSize() < 0) {
+            throw new ConfigException(format(Locale.ENGLISH, "'page_queue_size' must be 0 or larger: %d", task.getPageQueueSize()));
+        }
+        if (task.getPrefetchBufferBytes() < 1) {
+            throw new ConfigException(format(Locale.ENGLISH, "'prefetch_buffer_bytes' must be 1 or larger: %d", task.getPrefetchBufferBytes()));
+        }
+        if (task.getSplitChunkBytes() < 1) {
+            throw new ConfigException(format(Locale.ENGLISH, "'split_chunk_bytes' must be 1 or larger: %d", task.getSplitChunkBytes()));
+        }
+        for (ColumnConfig column : getSchemaConfig(task).getColumns()) {
+            JsonpathColumnOption option = CONFIG_MAPPER.map(column.getOption(), JsonpathColumnOption.class);
+            int cacheSize = option.getTimestampCacheSize().orElse(task.getDefaultTimestampCacheSize());
+            if (cacheSize < 0) {
+                throw new ConfigException(format(Locale.ENGLISH,
+                        "'timestamp_cache_size' must be 0 or larger: %d for column '%s'", cacheSize, column.getName()));
+            }
+        }
 
         control.run(task.dump(), schema);
     }
@@ -148,115 +339,410 @@ public class JsonpathParserPlugin
         String jsonRoot = task.getRoot();
 
         logger.info("JSONPath = " + jsonRoot);
-        final TimestampFormatter[] timestampParsers = newTimestampColumnFormatters(task, getSchemaConfig(task));
-        final Map<Column, String> jsonPathMap = createJsonPathMap(task, schema);
-        final boolean stopOnInvalidRecord = task.getStopOnInvalidRecord();
+        final JsonEngineType engineType = jsonEngineType(task);
+        logger.info("JSON engine = " + engineType);
+        final JsonEngine engine = newJsonEngine(engineType, jsonRoot, task.getFormat());
+        final BufferAllocator allocator = Exec.getBufferAllocator();
+        final List<TimestampCache> timestampCaches = Collections.synchronizedList(new ArrayList<>());
+        final long runId = RUN_SEQUENCE.incrementAndGet();
+        final ParserMetrics metrics = new ParserMetrics();
+        final Optional<ObjectName> metricsName = registerMetrics(metrics, runId);
 
         // TODO: Use Exec.getPageBuilder after dropping v0.9
-        try (final PageBuilder pageBuilder = new PageBuilder(Exec.getBufferAllocator(), schema, output)) {
-            ColumnVisitorImpl visitor = new ColumnVisitorImpl(task, schema, pageBuilder, timestampParsers);
-
-            try (final FileInputInputStream is = new FileInputInputStream(input)) {
-                while (is.nextFile()) {
-                    // parse(InputStream json) cause is.close(), so wrapping the original is into a temporary InputStream.
-                    final InputStream toParse = new InputStream() {
-                        @Override
-                        public int read()
-                        {
-                            return is.read();
-                        }
-                    };
-                    final JsonNode json;
+        try (final InvalidRecordHandler invalidRecords = new InvalidRecordHandler(task.getStopOnInvalidRecord(), metrics,
+                        openInvalidRecordOutput(task, runId));
+                final AsyncPageOutput asyncOutput = task.getPageQueueSize() > 0 ? new AsyncPageOutput(output, task.getPageQueueSize()) : null;
+                final PageBuilder pageBuilder = new PageBuilder(allocator, schema, asyncOutput != null ? asyncOutput : output);
+                final ParallelRecordMaterializer parallel = task.getParallelism() > 1
+                        ? new ParallelRecordMaterializer(task.getParallelism(), task.getPreserveOrder(), invalidRecords,
+                                allocator, schema, asyncOutput != null ? asyncOutput : output,
+                                workerPageBuilder -> newRecordMaterializer(task, schema, workerPageBuilder, timestampCaches, metrics))
+                        : null) {
+            final Consumer<JsonNode> emitter;
+            final StreamingRecordReader streamingReader;
+            if (parallel != null) {
+                emitter = parallel::add;
+                streamingReader = treeRecordReader(emitter, metrics);
+            }
+            else {
+                final RecordMaterializer materializer = newRecordMaterializer(task, schema, pageBuilder, timestampCaches, metrics);
+                emitter = recordValue -> {
                     try {
-                        json = JsonPath.using(JSON_PATH_CONFIG).parse(toParse).read(jsonRoot, JsonNode.class);
-                    }
-                    catch (PathNotFoundException e) {
-                        skipOrThrow(new DataException(format(Locale.ENGLISH,
-                                "Failed to get root json path='%s'", jsonRoot)), stopOnInvalidRecord);
-                        continue;
+                        materializer.addRecord(recordValue);
                     }
-                    catch (InvalidJsonException e) {
-                        skipOrThrow(new DataException(e), stopOnInvalidRecord);
-                        continue;
+                    catch (DataException e) {
+                        invalidRecords.skipOrThrow(e, SkipReason.INVALID_RECORD,
+                                InvalidRecord.ofValue(invalidRecords.getFileIndex(), recordValue, materializer.getFailedColumn()));
                     }
+                };
+                if (engine.isStreaming() && materializer.isStreamable() && !task.getPrefetch() && !task.getSplitRootArray()) {
+                    logger.info("Columns are read from the token stream without building records.");
+                    streamingReader = parser -> {
+                        // The record is not kept as a value, so the output of an invalid one has its range of bytes.
+                        final long from = invalidRecords.isWriting() ? parser.getTokenLocation().getByteOffset() : -1;
+                        try {
+                            materializer.addRecord(parser);
+                        }
+                        catch (DataException e) {
+                            invalidRecords.skipOrThrow(e, SkipReason.INVALID_RECORD, InvalidRecord.ofRange(invalidRecords.getFileIndex(),
+                                    from, parser.getCurrentLocation().getByteOffset(), materializer.getFailedColumn()));
+                        }
+                    };
+                }
+                else {
+                    streamingReader = treeRecordReader(emitter, metrics);
+                }
+            }
 
-                    if (json.isArray()) {
-                        for (JsonNode recordValue : json) {
-                            try {
-                                createRecordFromJson(recordValue, schema, jsonPathMap, visitor, pageBuilder);
-                            }
-                            catch (DataException e) {
-                                skipOrThrow(e, stopOnInvalidRecord);
-                                continue;
-                            }
+            if (task.getPrefetch()) {
+                // Records of the prefetched files are trees, since the parser is on the helper thread.
+                try (final FilePrefetcher prefetcher = new FilePrefetcher(input, task.getPrefetchBufferBytes(),
+                        (file, fileEmitter, fileInvalidRecords) -> parseFile(file, task, engine, fileEmitter,
+                                treeRecordReader(fileEmitter, metrics), metrics, fileInvalidRecords),
+                        invalidRecords)) {
+                    Optional<FilePrefetcher.PrefetchedFile> file;
+                    while ((file = prefetcher.nextFile()).isPresent()) {
+                        invalidRecords.startFile(file.get().getIndex());
+                        final long[] skippedBefore = skippedCounts(metrics);
+                        try {
+                            file.get().emit(emitter);
+                        }
+                        finally {
+                            metrics.addFile();
+                            metrics.addBytes(file.get().getBytes());
+                            logSkippedInFile(file.get().getName(), metrics, skippedBefore);
                         }
                     }
-                    else {
+                }
+            }
+            else {
+                try (final FileInputInputStream is = new FileInputInputStream(input)) {
+                    for (int fileIndex = 0; is.nextFile(); fileIndex++) {
+                        invalidRecords.startFile(fileIndex);
+                        // parse(InputStream json) cause is.close(), so wrapping the original is into a temporary InputStream.
+                        final NonClosingInputStream file = new NonClosingInputStream(is);
+                        final long[] skippedBefore = skippedCounts(metrics);
                         try {
-                            createRecordFromJson(json, schema, jsonPathMap, visitor, pageBuilder);
+                            parseFile(file, task, engine, emitter, streamingReader, metrics, invalidRecords);
                         }
-                        catch (DataException e) {
-                            skipOrThrow(e, stopOnInvalidRecord);
-                            continue;
+                        finally {
+                            metrics.addFile();
+                            metrics.addBytes(file.getCount());
+                            logSkippedInFile(input.hintOfCurrentInputFileNameForLogging(), metrics, skippedBefore);
                         }
                     }
                 }
             }
 
+            if (parallel != null) {
+                parallel.finish();
+            }
             pageBuilder.finish();
         }
+        finally {
+            unregisterMetrics(metricsName);
+            logger.info("Parser metrics: " + metrics.summary());
+        }
+        logTimestampCacheStats(timestampCaches);
     }
 
-    private Map<Column, String> createJsonPathMap(PluginTask task, Schema schema)
+    private static long[] skippedCounts(ParserMetrics metrics)
     {
-        Map<Column, String> columnMap = new HashMap<>();
-        for (int i = 0; i < schema.size(); i++) {
-            ColumnConfig config = getSchemaConfig(task).getColumn(i);
-            JsonpathColumnOption option = CONFIG_MAPPER.map(config.getOption(), JsonpathColumnOption.class);
-            if (option.getPath().isPresent()) {
-                columnMap.put(schema.getColumn(i), option.getPath().get());
-            }
+        final long[] counts = new long[SkipReason.values().length];
+        for (SkipReason reason : SkipReason.values()) {
+            counts[reason.ordinal()] = metrics.getSkipped(reason);
+        }
+        return counts;
+    }
+
+    // With parallelism, invalid records are counted when a worker meets them, which may be while a later file is read.
+    private static void logSkippedInFile(Optional<String> fileName, ParserMetrics metrics, long[] skippedBefore)
+    {
+        final long[] skipped = skippedCounts(metrics);
+        long total = 0;
+        for (int i = 0; i < skipped.length; i++) {
+            skipped[i] -= skippedBefore[i];
+            total += skipped[i];
+        }
+        if (total > 0) {
+            logger.warn(format(Locale.ENGLISH, "Skipped %d invalid records in %s: %d invalid JSON, %d root not found, %d invalid records",
+                    total, fileName.orElse("a file"),
+                    skipped[SkipReason.INVALID_JSON.ordinal()], skipped[SkipReason.ROOT_NOT_FOUND.ordinal()],
+                    skipped[SkipReason.INVALID_RECORD.ordinal()]));
+        }
+    }
+
+    private static Optional<InvalidRecordWriter> openInvalidRecordOutput(PluginTask task, long runId)
+    {
+        if (!task.getInvalidRecordOutput().isPresent()) {
+            return Optional.empty();
         }
-        return Collections.unmodifiableMap(columnMap);
+        final Path path = Paths.get(format(Locale.ENGLISH, "%s%s_%d.jsonl", task.getInvalidRecordOutput().get(), JVM_ID, runId));
+        try {
+            final InvalidRecordWriter writer = InvalidRecordWriter.open(path);
+            logger.info("Invalid records are written to " + path);
+            return Optional.of(writer);
+        }
+        catch (IOException e) {
+            throw new ConfigException(format(Locale.ENGLISH, "Failed to open 'invalid_record_output': '%s'", path), e);
+        }
+    }
+
+    // Makes the metrics visible over JMX while the task runs. Tasks running in parallel get their own names.
+    private static Optional<ObjectName> registerMetrics(ParserMetrics metrics, long runId)
+    {
+        try {
+            final ObjectName name = new ObjectName(format(Locale.ENGLISH,
+                    "org.embulk.parser.jsonpath:type=ParserMetrics,id=%d", runId));
+            ManagementFactory.getPlatformMBeanServer().registerMBean(metrics, name);
+            return Optional.of(name);
+        }
+        catch (JMException | SecurityException e) {
+            logger.debug("Failed to register the parser metrics to JMX.", e);
+            return Optional.empty();
+        }
+    }
+
+    private static void unregisterMetrics(Optional<ObjectName> name)
+    {
+        if (!name.isPresent()) {
+            return;
+        }
+        try {
+            final MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+            server.unregisterMBean(name.get());
+        }
+        catch (JMException | SecurityException e) {
+            logger.debug("Failed to unregister the parser metrics from JMX.", e);
+        }
+    }
+
+    // Takes one record from a parser at the first token of the record, and consumes the whole record.
+    interface StreamingRecordReader
+    {
+        void read(JsonParser parser)
+                throws IOException;
+    }
+
+    static StreamingRecordReader treeRecordReader(Consumer<JsonNode> emitter, ParserMetrics metrics)
+    {
+        final ParserMetrics.Sampler sampler = new ParserMetrics.Sampler();
+        return parser -> {
+            final boolean timed = sampler.next();
+            final long start = timed ? System.nanoTime() : 0;
+            JsonNode recordValue = OBJECT_MAPPER.readTree(parser);
+            if (timed) {
+                metrics.addParseNanos(sampler.scale(System.nanoTime() - start));
+            }
+            emitter.accept(recordValue != null ? recordValue : NullNode.getInstance());
+        };
     }
 
-    private void createRecordFromJson(JsonNode json, Schema schema, Map<Column, String> jsonPathMap, ColumnVisitorImpl visitor, PageBuilder pageBuilder)
+    // Reads one file and passes each record value to the emitter.
+    void parseFile(InputStream toParse, PluginTask task, JsonEngine engine, Consumer<JsonNode> emitter)
     {
-        if (json.getNodeType() != JsonNodeType.OBJECT) {
-            throw new JsonRecordValidateException(format(Locale.ENGLISH,
-                    "Json string is not representing map value json='%s'", json));
+        final ParserMetrics metrics = new ParserMetrics();
+        final InvalidRecordHandler invalidRecords = new InvalidRecordHandler(task.getStopOnInvalidRecord(), metrics, Optional.empty());
+        parseFile(toParse, task, engine, emitter, treeRecordReader(emitter, metrics), metrics, invalidRecords);
+    }
+
+    // Reads one file. Records of a streaming engine are taken by streamingReader, and other records are passed to the emitter.
+    void parseFile(InputStream toParse, PluginTask task, JsonEngine engine,
+            Consumer<JsonNode> emitter, StreamingRecordReader streamingReader, ParserMetrics metrics, InvalidRecordHandler invalidRecords)
+    {
+        if (task.getSplitRootArray()) {
+            parseSplit(toParse, task, emitter, streamingReader, metrics, invalidRecords);
+            return;
         }
+        engine.parseFile(toParse, emitter, streamingReader, metrics, invalidRecords);
+    }
 
-        for (Column column : schema.getColumns()) {
-            JsonNode value = null;
-            if (jsonPathMap.containsKey(column)) {
+    // Spools the file to a local temporary file, so that the elements of the root array can be parsed in chunks on worker threads.
+    // A root which is not an array is read from the temporary file as with streaming.
+    private void parseSplit(InputStream toParse, PluginTask task, Consumer<JsonNode> emitter,
+            StreamingRecordReader streamingReader, ParserMetrics metrics, InvalidRecordHandler invalidRecords)
+    {
+        final SimpleJsonPath root = newStreamingRoot(task.getRoot());
+        Path spool = null;
+        try {
+            spool = Files.createTempFile("embulk-parser-jsonpath-", ".json");
+            Files.copy(toParse, spool, StandardCopyOption.REPLACE_EXISTING);
+
+            final long arrayStart;
+            try (final JsonParser parser = OBJECT_MAPPER.getFactory().createParser(spool.toFile())) {
+                final StreamingRootReader reader = new StreamingRootReader(parser, root);
+                if (!reader.nextDocument() || !reader.seek()) {
+                    invalidRecords.skipOrThrow(new DataException(format(Locale.ENGLISH,
+                            "Failed to get root json path='%s'", root)), SkipReason.ROOT_NOT_FOUND);
+                    return;
+                }
+                arrayStart = reader.isInArray() ? parser.getTokenLocation().getByteOffset() : -1;
+            }
+            catch (JsonProcessingException e) {
+                invalidRecords.skipOrThrow(new DataException(e), SkipReason.INVALID_JSON,
+                        InvalidRecord.ofRange(invalidRecords.getFileIndex(), 0, errorOffset(e), Optional.empty()));
+                return;
+            }
+
+            if (arrayStart < 0) {
+                try (final InputStream in = Files.newInputStream(spool)) {
+                    new StreamingJsonEngine(root, Format.JSON).parseFile(in, emitter, streamingReader, metrics, invalidRecords);
+                }
+                return;
+            }
+            try (final FileChannel file = FileChannel.open(spool, StandardOpenOption.READ);
+                    final RootArraySplitter splitter = new RootArraySplitter(OBJECT_MAPPER, task.getParallelism(), task.getSplitChunkBytes(),
+                            metrics)) {
+                splitter.parse(file, arrayStart, emitter, invalidRecords);
+            }
+        }
+        catch (IOException e) {
+            throw new UncheckedIOException("Failed to split a root array in a temporary file", e);
+        }
+        finally {
+            if (spool != null) {
                 try {
-                    value = JsonPath.using(JSON_PATH_CONFIG).parse(json).read(jsonPathMap.get(column));
+                    Files.deleteIfExists(spool);
                 }
-                catch (PathNotFoundException e) {
-                    // pass (value is nullable)
+                catch (IOException e) {
+                    logger.warn("Failed to delete a temporary file: " + spool, e);
                 }
             }
-            else {
-                value = json.get(column.getName());
+        }
+    }
+
+    // The byte offset where a JSON parser failed, or -1 if it is not known
+    static long errorOffset(Throwable e)
+    {
+        for (Throwable cause = e; cause != null; cause = cause.getCause()) {
+            if (cause instanceof JsonProcessingException && ((JsonProcessingException) cause).getLocation() != null) {
+                return ((JsonProcessingException) cause).getLocation().getByteOffset();
             }
-            visitor.setValue(value);
-            column.visit(visitor);
         }
+        return -1;
+    }
 
-        pageBuilder.addRecord();
+    // Timestamp caches created for the materializer are added to timestampCaches, so that their hit rates can be reported.
+    RecordMaterializer newRecordMaterializer(PluginTask task, Schema schema, PageBuilder pageBuilder, List<TimestampCache> timestampCaches,
+            ParserMetrics metrics)
+    {
+        final TimestampFormatter[] timestampFormatters = newTimestampColumnFormatters(task, getSchemaConfig(task));
+        final TimestampColumnParser[] timestampParsers = new TimestampColumnParser[schema.size()];
+        for (int i = 0; i < schema.size(); i++) {
+            if (timestampFormatters[i] == null) {
+                continue;
+            }
+            JsonpathColumnOption option = CONFIG_MAPPER.map(getSchemaConfig(task).getColumn(i).getOption(), JsonpathColumnOption.class);
+            TimestampColumnParser parser = TimestampColumnParser.of(timestampFormatters[i]);
+            Optional<FastTimestampParser> fastParser = FastTimestampParser.of(
+                    option.getFormat().orElse(task.getDefaultTimestampFormat()),
+                    option.getTimeZoneId().orElse(task.getDefaultTimeZoneId()), parser);
+            if (fastParser.isPresent()) {
+                parser = fastParser.get();
+            }
+            int cacheSize = option.getTimestampCacheSize().orElse(task.getDefaultTimestampCacheSize());
+            if (cacheSize > 0) {
+                TimestampCache cache = new TimestampCache(schema.getColumn(i), parser, cacheSize);
+                timestampCaches.add(cache);
+                parser = cache;
+            }
+            if (option.getUnit().isPresent()) {
+                parser = new NumericTimestampParser(option.getUnit().get(), parser);
+            }
+            timestampParsers[i] = parser;
+        }
+        final ColumnVisitorImpl visitor = new ColumnVisitorImpl(task, schema, pageBuilder, timestampParsers);
+        return new RecordMaterializer(schema, createColumnPathEvaluator(task, schema), visitor, pageBuilder, metrics);
     }
 
-    private void skipOrThrow(DataException cause, boolean stopOnInvalidRecord)
+    private static void logTimestampCacheStats(List<TimestampCache> timestampCaches)
     {
-        if (stopOnInvalidRecord) {
-            throw cause;
+        // Caches of parallel workers are summed up per column.
+        final Map<String, long[]> stats = new LinkedHashMap<>();
+        synchronized (timestampCaches) {
+            for (TimestampCache cache : timestampCaches) {
+                long[] hitsAndMisses = stats.computeIfAbsent(cache.getColumn().getName(), name -> new long[2]);
+                hitsAndMisses[0] += cache.getHits();
+                hitsAndMisses[1] += cache.getMisses();
+            }
+        }
+        for (Map.Entry<String, long[]> entry : stats.entrySet()) {
+            long hits = entry.getValue()[0];
+            long total = hits + entry.getValue()[1];
+            logger.info(format(Locale.ENGLISH, "Timestamp cache of column '%s': %d hits in %d lookups (%.1f%%)",
+                    entry.getKey(), hits, total, total == 0 ? 0.0 : hits * 100.0 / total));
+        }
+    }
+
+    // streaming is taken as json_engine: jackson_streaming
+    static JsonEngineType jsonEngineType(PluginTask task)
+    {
+        if (task.getStreaming()) {
+            if (task.getJsonEngine().isPresent() && task.getJsonEngine().get() != JsonEngineType.JACKSON_STREAMING) {
+                throw new ConfigException(format(Locale.ENGLISH,
+                        "'streaming' is an alias of json_engine 'jackson_streaming', but json_engine is '%s'", task.getJsonEngine().get()));
+            }
+            return JsonEngineType.JACKSON_STREAMING;
+        }
+        return task.getJsonEngine().orElse(JsonEngineType.JAYWAY);
+    }
+
+    static JsonEngine newJsonEngine(PluginTask task)
+    {
+        return newJsonEngine(jsonEngineType(task), task.getRoot(), task.getFormat());
+    }
+
+    static JsonEngine newJsonEngine(JsonEngineType type, String root, Format format)
+    {
+        switch (type) {
+            case JACKSON_STREAMING:
+                return new StreamingJsonEngine(newStreamingRoot(root), format);
+            default:
+                return new JaywayJsonEngine(root, format);
+        }
+    }
+
+    static SimpleJsonPath newStreamingRoot(String root)
+    {
+        Optional<SimpleJsonPath> path = SimpleJsonPath.parse(root);
+        if (!path.isPresent() || !path.get().isStreamable()) {
+            throw new ConfigException(format(Locale.ENGLISH,
+                    "json_engine 'jackson_streaming' and 'split_root_array' support only a root of property names, array indexes and a trailing wildcard: root='%s'", root));
+        }
+        return path.get();
+    }
+
+    ColumnPathEvaluator createColumnPathEvaluator(PluginTask task, Schema schema)
+    {
+        final SimpleJsonPath[] simplePaths = new SimpleJsonPath[schema.size()];
+        final JsonPath[] jsonPaths = new JsonPath[schema.size()];
+        for (int i = 0; i < schema.size(); i++) {
+            ColumnConfig config = getSchemaConfig(task).getColumn(i);
+            JsonpathColumnOption option = CONFIG_MAPPER.map(config.getOption(), JsonpathColumnOption.class);
+            if (!option.getPath().isPresent()) {
+                simplePaths[i] = SimpleJsonPath.ofName(schema.getColumn(i).getName());
+                continue;
+            }
+
+            final String path = option.getPath().get();
+            final Optional<SimpleJsonPath> simplePath = SimpleJsonPath.parse(path);
+            if (simplePath.isPresent() && !simplePath.get().hasWildcard()) {
+                simplePaths[i] = simplePath.get();
+                continue;
+            }
+            try {
+                jsonPaths[i] = JsonPath.compile(path);
+            }
+            catch (InvalidPathException e) {
+                throw new ConfigException(format(Locale.ENGLISH,
+                        "Invalid json path='%s' for column '%s'", path, config.getName()), e);
+            }
         }
-        logger.warn(String.format(ENGLISH, "Skipped invalid record (%s)", cause));
+        return new ColumnPathEvaluator(simplePaths, jsonPaths, JSON_PATH_CONFIG);
     }
 
     // this method is to keep the backward compatibility of 'schema' option.
-    private SchemaConfig getSchemaConfig(PluginTask task)
+    SchemaConfig getSchemaConfig(PluginTask task)
     {
         if (task.getSchemaConfig().isPresent()) {
             return task.getSchemaConfig().get();
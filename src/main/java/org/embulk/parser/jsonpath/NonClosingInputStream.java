@@ -0,0 +1,70 @@
+package org.embulk.parser.jsonpath;
+
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * Passes reads through to the wrapped stream in bulk but ignores {@link #close()},
+ * so that JSON parsers which close their source do not close the underlying {@code FileInputInputStream}.
+ * It also counts the bytes read or skipped.
+ */
+public class NonClosingInputStream
+        extends InputStream
+{
+    private final InputStream in;
+    private long count;
+
+    public NonClosingInputStream(InputStream in)
+    {
+        this.in = in;
+    }
+
+    @Override
+    public int read()
+            throws IOException
+    {
+        int b = in.read();
+        if (b >= 0) {
+            count++;
+        }
+        return b;
+    }
+
+    @Override
+    public int read(byte[] b, int off, int len)
+            throws IOException
+    {
+        int n = in.read(b, off, len);
+        if (n > 0) {
+            count += n;
+        }
+        return n;
+    }
+
+    @Override
+    public long skip(long n)
+            throws IOException
+    {
+        long skipped = in.skip(n);
+        count += skipped;
+        return skipped;
+    }
+
+    @Override
+    public int available()
+            throws IOException
+    {
+        return in.available();
+    }
+
+    public long getCount()
+    {
+        return count;
+    }
+
+    @Override
+    public void close()
+    {
+        // pass (the wrapped stream is closed by its owner)
+    }
+}
@@ -0,0 +1,53 @@
+package org.embulk.parser.jsonpath;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import org.embulk.spi.DataException;
+
+import java.time.DateTimeException;
+import java.time.Instant;
+
+import static java.lang.String.format;
+
+/**
+ * Converts numeric values of a timestamp column, counted in a {@link TimestampUnit} from the epoch,
+ * with arithmetic instead of formatting them into strings and parsing them back.
+ * Strings are left to the parser of the column format.
+ */
+public class NumericTimestampParser
+        implements TimestampColumnParser
+{
+    private final TimestampUnit unit;
+    private final TimestampColumnParser textParser;
+
+    public NumericTimestampParser(TimestampUnit unit, TimestampColumnParser textParser)
+    {
+        this.unit = unit;
+        this.textParser = textParser;
+    }
+
+    @Override
+    public Instant parse(JsonNode value)
+            throws DataException
+    {
+        if (!value.isNumber()) {
+            return textParser.parse(value);
+        }
+        try {
+            if (value.isIntegralNumber() && value.canConvertToLong()) {
+                return unit.toInstant(value.longValue());
+            }
+            return unit.toInstant(value.decimalValue());
+        }
+        catch (DateTimeException | ArithmeticException | NumberFormatException e) {
+            // NumberFormatException is thrown by decimalValue() of NaN and infinities.
+            throw new DataException(format("cannot convert %s (%s) to timestamp", value, unit), e);
+        }
+    }
+
+    @Override
+    public Instant parse(String value)
+            throws DataException
+    {
+        return textParser.parse(value);
+    }
+}
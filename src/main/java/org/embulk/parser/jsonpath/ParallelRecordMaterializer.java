@@ -0,0 +1,304 @@
+package org.embulk.parser.jsonpath;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import org.embulk.parser.jsonpath.ParserMetrics.SkipReason;
+import org.embulk.spi.BufferAllocator;
+import org.embulk.spi.DataException;
+import org.embulk.spi.Page;
+import org.embulk.spi.PageBuilder;
+import org.embulk.spi.PageOutput;
+import org.embulk.spi.Schema;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+
+/**
+ * Materializes records on a pool of worker threads.
+ *
+ * Records are handed over in batches. Each worker owns its own {@link PageBuilder}, and the pages which it fills
+ * are passed on by the calling thread to the real {@link PageOutput}.
+ *
+ * Without order, a page builder stays open across batches, so only full pages are passed on until {@link #finish()}
+ * flushes the rest. With order, the pages of a batch are passed on in the order the batches were added, so each batch
+ * has to end its last page. Batches then grow to fill several pages, so that few pages are left partly filled.
+ */
+public class ParallelRecordMaterializer
+        implements AutoCloseable
+{
+    static final int BATCH_SIZE = 1000;
+    // With order, a batch is sized to fill this many pages, up to MAX_BATCH_SIZE records
+    static final int PAGES_PER_BATCH = 8;
+    static final int MAX_BATCH_SIZE = 20000;
+
+    private final PageOutput output;
+    private final boolean preserveOrder;
+    private final InvalidRecordHandler invalidRecords;
+    private final int maxInFlight;
+    private final ExecutorService executor;
+    private final CompletionService<List<Page>> completionService;
+    private final List<Worker> workers = new ArrayList<>();
+    private final BlockingQueue<Worker> idleWorkers = new LinkedBlockingQueue<>();
+    private final Deque<Future<List<Page>>> inFlight = new ArrayDeque<>();
+    private List<JsonNode> batch = new ArrayList<>(BATCH_SIZE);
+    private int batchFileIndex;
+    private int batchSize = BATCH_SIZE;
+    // The most records a worker has put in one full page, updated by the workers
+    private volatile int recordsPerPage;
+
+    public ParallelRecordMaterializer(int parallelism, boolean preserveOrder, InvalidRecordHandler invalidRecords,
+            BufferAllocator allocator, Schema schema, PageOutput output,
+            Function<PageBuilder, RecordMaterializer> materializerFactory)
+    {
+        this.output = output;
+        this.preserveOrder = preserveOrder;
+        this.invalidRecords = invalidRecords;
+        this.maxInFlight = parallelism * 2;
+        this.executor = Executors.newFixedThreadPool(parallelism, runnable -> {
+            Thread thread = new Thread(runnable, "embulk-parser-jsonpath-worker");
+            thread.setDaemon(true);
+            return thread;
+        });
+        this.completionService = preserveOrder ? null : new ExecutorCompletionService<>(executor);
+        for (int i = 0; i < parallelism; i++) {
+            Worker worker = new Worker(allocator, schema, materializerFactory);
+            workers.add(worker);
+            idleWorkers.add(worker);
+        }
+    }
+
+    /**
+     * Adds a record of the file which {@link InvalidRecordHandler#getFileIndex()} tells. A batch has records of one file.
+     */
+    public void add(JsonNode record)
+    {
+        if (!batch.isEmpty() && batchFileIndex != invalidRecords.getFileIndex()) {
+            submit();
+        }
+        if (batch.isEmpty()) {
+            batchFileIndex = invalidRecords.getFileIndex();
+        }
+        batch.add(record);
+        if (batch.size() >= batchSize) {
+            submit();
+        }
+    }
+
+    /**
+     * Waits for all the added records and passes their pages on to the output.
+     */
+    public void finish()
+    {
+        if (!batch.isEmpty()) {
+            submit();
+        }
+        while (!inFlight.isEmpty()) {
+            forward(takeNext());
+        }
+        // Every worker is idle now, so their page builders can be flushed from this thread.
+        for (Worker worker : workers) {
+            worker.pageBuilder.flush();
+            for (Page page : worker.pages.drain()) {
+                output.add(page);
+            }
+        }
+    }
+
+    @Override
+    public void close()
+    {
+        executor.shutdownNow();
+        try {
+            executor.awaitTermination(1, TimeUnit.MINUTES);
+        }
+        catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        for (Future<List<Page>> future : inFlight) {
+            if (future.isDone() && !future.isCancelled()) {
+                try {
+                    for (Page page : future.get()) {
+                        page.release();
+                    }
+                }
+                catch (InterruptedException | ExecutionException e) {
+                    // pass (the pages of a failed batch were never handed out)
+                }
+            }
+        }
+        inFlight.clear();
+        for (Worker worker : workers) {
+            worker.pageBuilder.close();
+        }
+    }
+
+    private void submit()
+    {
+        final List<JsonNode> records = batch;
+        final int fileIndex = batchFileIndex;
+        if (preserveOrder) {
+            // Until a worker has filled a page, batches grow as the records of a page are not known.
+            batchSize = recordsPerPage > 0
+                    ? Math.max(BATCH_SIZE, Math.min(MAX_BATCH_SIZE, recordsPerPage * PAGES_PER_BATCH))
+                    : Math.min(MAX_BATCH_SIZE, batchSize * 2);
+        }
+        batch = new ArrayList<>(batchSize);
+        if (preserveOrder) {
+            inFlight.add(executor.submit(() -> process(records, fileIndex)));
+        }
+        else {
+            inFlight.add(completionService.submit(() -> process(records, fileIndex)));
+        }
+        while (inFlight.size() >= maxInFlight) {
+            forward(takeNext());
+        }
+    }
+
+    private Future<List<Page>> takeNext()
+    {
+        if (preserveOrder) {
+            return inFlight.poll();
+        }
+        try {
+            Future<List<Page>> future = completionService.take();
+            inFlight.remove(future);
+            return future;
+        }
+        catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException(e);
+        }
+    }
+
+    private void forward(Future<List<Page>> future)
+    {
+        final List<Page> pages;
+        try {
+            pages = future.get();
+        }
+        catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException(e);
+        }
+        catch (ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
+            }
+            if (e.getCause() instanceof Error) {
+                throw (Error) e.getCause();
+            }
+            throw new RuntimeException(e.getCause());
+        }
+        for (Page page : pages) {
+            output.add(page);
+        }
+    }
+
+    private List<Page> process(List<JsonNode> records, int fileIndex)
+            throws InterruptedException
+    {
+        Worker worker = idleWorkers.take();
+        try {
+            return worker.process(records, fileIndex);
+        }
+        finally {
+            idleWorkers.add(worker);
+        }
+    }
+
+    private final class Worker
+    {
+        private final CollectingPageOutput pages = new CollectingPageOutput();
+        private final PageBuilder pageBuilder;
+        private final RecordMaterializer materializer;
+        private int recordsSincePage;
+
+        private Worker(BufferAllocator allocator, Schema schema, Function<PageBuilder, RecordMaterializer> materializerFactory)
+        {
+            this.pageBuilder = new PageBuilder(allocator, schema, pages);
+            this.materializer = materializerFactory.apply(pageBuilder);
+        }
+
+        private List<Page> process(List<JsonNode> records, int fileIndex)
+        {
+            try {
+                for (JsonNode record : records) {
+                    final int pageCount = pages.size();
+                    try {
+                        materializer.addRecord(record);
+                    }
+                    catch (DataException e) {
+                        invalidRecords.skipOrThrow(e, SkipReason.INVALID_RECORD,
+                                InvalidRecord.ofValue(fileIndex, record, materializer.getFailedColumn()));
+                        continue;
+                    }
+                    recordsSincePage++;
+                    if (pages.size() > pageCount) {
+                        // The record has filled a page.
+                        if (recordsSincePage > recordsPerPage) {
+                            recordsPerPage = recordsSincePage;
+                        }
+                        recordsSincePage = 0;
+                    }
+                }
+                if (preserveOrder) {
+                    // The next records may go to another worker, so the records of this batch have to be passed on now.
+                    pageBuilder.flush();
+                    recordsSincePage = 0;
+                }
+                return pages.drain();
+            }
+            catch (RuntimeException | Error e) {
+                for (Page page : pages.drain()) {
+                    page.release();
+                }
+                throw e;
+            }
+        }
+    }
+
+    private static final class CollectingPageOutput
+            implements PageOutput
+    {
+        private List<Page> pages = new ArrayList<>();
+
+        @Override
+        public void add(Page page)
+        {
+            pages.add(page);
+        }
+
+        @Override
+        public void finish()
+        {
+        }
+
+        @Override
+        public void close()
+        {
+        }
+
+        private int size()
+        {
+            return pages.size();
+        }
+
+        private List<Page> drain()
+        {
+            List<Page> drained = pages;
+            pages = new ArrayList<>();
+            return drained;
+        }
+    }
+}
@@ -0,0 +1,192 @@
+package org.embulk.parser.jsonpath;
+
+import java.util.Locale;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+import static java.lang.String.format;
+
+/**
+ * Counters and timers of one parser task, updated by the reading thread and the workers of parallel materialization.
+ *
+ * When records are read from the token stream, reading the tokens of a record is counted as path evaluation.
+ * Timers of single records are sampled with a {@link Sampler}, so that most records do not read the clock.
+ */
+public class ParserMetrics
+        implements ParserMetricsMBean
+{
+    public enum SkipReason
+    {
+        INVALID_JSON,
+        ROOT_NOT_FOUND,
+        INVALID_RECORD,
+    }
+
+    static final int SAMPLE_INTERVAL = 64;
+
+    private final LongAdder files = new LongAdder();
+    private final LongAdder bytes = new LongAdder();
+    private final LongAdder records = new LongAdder();
+    private final AtomicLong[] skipped = new AtomicLong[SkipReason.values().length];
+    private final LongAdder parseNanos = new LongAdder();
+    private final LongAdder pathEvaluationNanos = new LongAdder();
+    private final LongAdder typecastNanos = new LongAdder();
+    private final LongAdder pageBuildingNanos = new LongAdder();
+
+    public ParserMetrics()
+    {
+        for (int i = 0; i < skipped.length; i++) {
+            skipped[i] = new AtomicLong();
+        }
+    }
+
+    public void addFile()
+    {
+        files.increment();
+    }
+
+    public void addBytes(long count)
+    {
+        bytes.add(count);
+    }
+
+    public void addRecord()
+    {
+        records.increment();
+    }
+
+    /**
+     * @return the number of records skipped for the reason so far, including this one
+     */
+    public long addSkipped(SkipReason reason)
+    {
+        return skipped[reason.ordinal()].incrementAndGet();
+    }
+
+    public void addParseNanos(long nanos)
+    {
+        parseNanos.add(nanos);
+    }
+
+    public void addPathEvaluationNanos(long nanos)
+    {
+        pathEvaluationNanos.add(nanos);
+    }
+
+    public void addTypecastNanos(long nanos)
+    {
+        typecastNanos.add(nanos);
+    }
+
+    public void addPageBuildingNanos(long nanos)
+    {
+        pageBuildingNanos.add(nanos);
+    }
+
+    /**
+     * Picks 1 record in {@link #SAMPLE_INTERVAL} to be timed, and scales its times up to all the records.
+     * An instance is confined to one thread.
+     */
+    public static final class Sampler
+    {
+        private int count;
+
+        /**
+         * Whether the next record is timed.
+         */
+        public boolean next()
+        {
+            if (++count < SAMPLE_INTERVAL) {
+                return false;
+            }
+            count = 0;
+            return true;
+        }
+
+        /**
+         * The nanoseconds of a timed record, scaled up to the records which were not timed.
+         */
+        public long scale(long nanos)
+        {
+            return nanos * SAMPLE_INTERVAL;
+        }
+    }
+
+    public long getSkipped(SkipReason reason)
+    {
+        return skipped[reason.ordinal()].get();
+    }
+
+    @Override
+    public long getFiles()
+    {
+        return files.sum();
+    }
+
+    @Override
+    public long getBytes()
+    {
+        return bytes.sum();
+    }
+
+    @Override
+    public long getRecords()
+    {
+        return records.sum();
+    }
+
+    @Override
+    public long getSkippedInvalidJson()
+    {
+        return getSkipped(SkipReason.INVALID_JSON);
+    }
+
+    @Override
+    public long getSkippedRootNotFound()
+    {
+        return getSkipped(SkipReason.ROOT_NOT_FOUND);
+    }
+
+    @Override
+    public long getSkippedInvalidRecords()
+    {
+        return getSkipped(SkipReason.INVALID_RECORD);
+    }
+
+    @Override
+    public long getParseMillis()
+    {
+        return TimeUnit.NANOSECONDS.toMillis(parseNanos.sum());
+    }
+
+    @Override
+    public long getPathEvaluationMillis()
+    {
+        return TimeUnit.NANOSECONDS.toMillis(pathEvaluationNanos.sum());
+    }
+
+    @Override
+    public long getTypecastMillis()
+    {
+        return TimeUnit.NANOSECONDS.toMillis(typecastNanos.sum());
+    }
+
+    @Override
+    public long getPageBuildingMillis()
+    {
+        return TimeUnit.NANOSECONDS.toMillis(pageBuildingNanos.sum());
+    }
+
+    /**
+     * A single line for the log at the end of a task.
+     */
+    public String summary()
+    {
+        return format(Locale.ENGLISH,
+                "%d files, %d bytes, %d records, skipped %d invalid JSON, %d root not found, %d invalid records; "
+                        + "parse %d ms, path evaluation %d ms, typecast %d ms, page building %d ms",
+                getFiles(), getBytes(), getRecords(), getSkippedInvalidJson(), getSkippedRootNotFound(), getSkippedInvalidRecords(),
+                getParseMillis(), getPathEvaluationMillis(), getTypecastMillis(), getPageBuildingMillis());
+    }
+}
@@ -0,0 +1,27 @@
+package org.embulk.parser.jsonpath;
+
+/**
+ * The JMX view of {@link ParserMetrics}. Times are summed over the threads which materialize records.
+ */
+public interface ParserMetricsMBean
+{
+    long getFiles();
+
+    long getBytes();
+
+    long getRecords();
+
+    long getSkippedInvalidJson();
+
+    long getSkippedRootNotFound();
+
+    long getSkippedInvalidRecords();
+
+    long getParseMillis();
+
+    long getPathEvaluationMillis();
+
+    long getTypecastMillis();
+
+    long getPageBuildingMillis();
+}
@@ -0,0 +1,129 @@
+package org.embulk.parser.jsonpath;
+
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.JsonNodeType;
+import org.embulk.spi.Column;
+import org.embulk.spi.PageBuilder;
+import org.embulk.spi.Schema;
+import org.embulk.spi.type.JsonType;
+import org.embulk.spi.type.TimestampType;
+
+import java.io.IOException;
+import java.util.Optional;
+
+/**
+ * Turns one JSON record into one row of a {@link PageBuilder}.
+ *
+ * An instance is confined to the thread which owns its {@link PageBuilder}.
+ */
+public class RecordMaterializer
+{
+    private static final ObjectMapper OBJECT_MAPPER = new ObjectMapper();
+
+    private final Schema schema;
+    private final ColumnPathEvaluator pathEvaluator;
+    private final ColumnVisitorImpl visitor;
+    private final PageBuilder pageBuilder;
+    private final ParserMetrics metrics;
+    private final JsonNode[] values;
+    private final TokenValue[] tokens;
+    private final ParserMetrics.Sampler sampler = new ParserMetrics.Sampler();
+    private Column failedColumn;
+
+    public RecordMaterializer(Schema schema, ColumnPathEvaluator pathEvaluator, ColumnVisitorImpl visitor, PageBuilder pageBuilder,
+            ParserMetrics metrics)
+    {
+        this.schema = schema;
+        this.pathEvaluator = pathEvaluator;
+        this.visitor = visitor;
+        this.pageBuilder = pageBuilder;
+        this.metrics = metrics;
+        this.values = new JsonNode[schema.size()];
+        this.tokens = new TokenValue[schema.size()];
+        for (Column column : schema.getColumns()) {
+            // Timestamp and json columns are converted from JsonNode values only.
+            if (!(column.getType() instanceof TimestampType) && !(column.getType() instanceof JsonType)) {
+                tokens[column.getIndex()] = new TokenValue();
+            }
+        }
+    }
+
+    public void addRecord(JsonNode json)
+    {
+        failedColumn = null;
+        if (json.getNodeType() != JsonNodeType.OBJECT) {
+            throw JsonRecordValidateException.of("Json string is not representing map value json='%s'", json);
+        }
+
+        final boolean timed = sampler.next();
+        final long start = timed ? System.nanoTime() : 0;
+        pathEvaluator.evaluate(json, values);
+        addValues(false, timed, start);
+    }
+
+    /**
+     * The column whose value failed to be converted in the last record, if it failed so.
+     */
+    public Optional<Column> getFailedColumn()
+    {
+        return Optional.ofNullable(failedColumn);
+    }
+
+    /**
+     * Whether records can be taken from a token stream with {@link #addRecord(JsonParser)}.
+     */
+    public boolean isStreamable()
+    {
+        return pathEvaluator.isStreamable();
+    }
+
+    /**
+     * Reads the record at the current token of {@code parser}, building only the values of the columns.
+     * Strings and numbers of boolean, long, double and string columns are converted from their tokens
+     * without building them. The whole record is consumed even if it is invalid.
+     */
+    public void addRecord(JsonParser parser)
+            throws IOException
+    {
+        failedColumn = null;
+        if (parser.getCurrentToken() != JsonToken.START_OBJECT) {
+            throw JsonRecordValidateException.of("Json string is not representing map value json='%s'", OBJECT_MAPPER.readTree(parser));
+        }
+
+        final boolean timed = sampler.next();
+        final long start = timed ? System.nanoTime() : 0;
+        pathEvaluator.evaluate(parser, values, tokens);
+        addValues(true, timed, start);
+    }
+
+    // start is when the evaluation of the paths started, if the record is timed.
+    private void addValues(boolean fromTokens, boolean timed, long start)
+    {
+        final long evaluated = timed ? System.nanoTime() : 0;
+        for (Column column : schema.getColumns()) {
+            final TokenValue token = tokens[column.getIndex()];
+            if (fromTokens && token != null && token.isPresent()) {
+                visitor.setValue(token);
+            }
+            else {
+                visitor.setValue(values[column.getIndex()]);
+            }
+            failedColumn = column;
+            column.visit(visitor);
+        }
+        failedColumn = null;
+        final long converted = timed ? System.nanoTime() : 0;
+
+        pageBuilder.addRecord();
+        if (timed) {
+            final long built = System.nanoTime();
+            metrics.addPathEvaluationNanos(sampler.scale(evaluated - start));
+            metrics.addTypecastNanos(sampler.scale(converted - evaluated));
+            metrics.addPageBuildingNanos(sampler.scale(built - converted));
+        }
+        metrics.addRecord();
+    }
+}
@@ -0,0 +1,115 @@
+package org.embulk.parser.jsonpath;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.SequenceInputStream;
+import java.util.Locale;
+
+import static java.lang.String.format;
+
+/**
+ * Keeps the last bytes read from the wrapped stream, so that reading can start over from a recent position,
+ * such as where a JSON parser failed, even though the parser has read ahead into its own buffer.
+ */
+public class RewindableInputStream
+        extends InputStream
+{
+    // Larger than the input buffer of a Jackson parser, so that its current token is always kept
+    static final int DEFAULT_WINDOW_SIZE = 64 * 1024;
+
+    private final InputStream in;
+    private final byte[] window;
+    private long position;
+
+    public RewindableInputStream(InputStream in)
+    {
+        this(in, DEFAULT_WINDOW_SIZE);
+    }
+
+    public RewindableInputStream(InputStream in, int windowSize)
+    {
+        this.in = in;
+        this.window = new byte[windowSize];
+    }
+
+    @Override
+    public int read()
+            throws IOException
+    {
+        int b = in.read();
+        if (b >= 0) {
+            window[(int) (position % window.length)] = (byte) b;
+            position++;
+        }
+        return b;
+    }
+
+    @Override
+    public int read(byte[] b, int off, int len)
+            throws IOException
+    {
+        int n = in.read(b, off, len);
+        for (int copied = Math.max(0, n - window.length); copied < n; ) {
+            int at = (int) ((position + copied) % window.length);
+            int length = Math.min(n - copied, window.length - at);
+            System.arraycopy(b, off + copied, window, at, length);
+            copied += length;
+        }
+        if (n > 0) {
+            position += n;
+        }
+        return n;
+    }
+
+    @Override
+    public int available()
+            throws IOException
+    {
+        return in.available();
+    }
+
+    /**
+     * The number of bytes read from the wrapped stream.
+     */
+    public long getPosition()
+    {
+        return position;
+    }
+
+    /**
+     * The first byte which {@link #rewind(long)} can still read again.
+     */
+    public long getRewindableFrom()
+    {
+        return Math.max(0, position - window.length);
+    }
+
+    /**
+     * Returns a stream which reads the bytes from {@code from} again, and then goes on with the rest of this stream.
+     * This stream must not be read other than through the returned one afterwards.
+     *
+     * @throws IOException if the bytes from {@code from} are no longer kept
+     */
+    public InputStream rewind(long from)
+            throws IOException
+    {
+        if (from < position - window.length || from < 0 || from > position) {
+            throw new IOException(format(Locale.ENGLISH, "Can not read again from byte %d, after reading %d bytes", from, position));
+        }
+        final byte[] replay = new byte[(int) (position - from)];
+        for (int copied = 0; copied < replay.length; ) {
+            int at = (int) ((from + copied) % window.length);
+            int length = Math.min(replay.length - copied, window.length - at);
+            System.arraycopy(window, at, replay, copied, length);
+            copied += length;
+        }
+        return new SequenceInputStream(new ByteArrayInputStream(replay), this);
+    }
+
+    @Override
+    public void close()
+    {
+        // pass (parsers close this stream, which is read again after they failed)
+    }
+}
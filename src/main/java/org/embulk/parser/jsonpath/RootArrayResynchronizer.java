@@ -0,0 +1,321 @@
+package org.embulk.parser.jsonpath;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonLocation;
+import com.fasterxml.jackson.core.JsonParseException;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.core.JsonStreamContext;
+import com.fasterxml.jackson.core.util.JsonParserDelegate;
+
+import java.io.ByteArrayInputStream;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.SequenceInputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Holds the parser and the {@link StreamingRootReader} of a file, and recovers from malformed JSON within a root array:
+ * skips to where the next element seems to start, and goes on reading with a new parser. It also recovers from
+ * a malformed document of JSON Lines by going on at the next line.
+ *
+ * The new parser reads the bytes again from a {@link RewindableInputStream}, after a made-up prefix which opens
+ * as many objects and arrays as the path to the root array, so that the rest of the document is read as before.
+ * Its locations are shifted to be the offsets in the file.
+ */
+public class RootArrayResynchronizer
+        implements Closeable
+{
+    private final JsonFactory factory;
+    private final SimpleJsonPath root;
+    private final RewindableInputStream input;
+    private JsonParser parser;
+    private StreamingRootReader reader;
+    // The offset in the file of the first byte which the current parser reads
+    private long base;
+    // The offset in the file of the first byte which the current parser reads from the file, after its prefix
+    private long readFrom;
+    private long skippedFrom = -1;
+    private long skippedTo = -1;
+
+    public RootArrayResynchronizer(JsonFactory factory, SimpleJsonPath root, InputStream in)
+            throws IOException
+    {
+        this.factory = factory;
+        this.root = root;
+        this.input = new RewindableInputStream(in);
+        this.parser = factory.createParser(input);
+        this.reader = new StreamingRootReader(parser, root);
+    }
+
+    /**
+     * The current parser, which is replaced by {@link #resynchronize(long)}.
+     */
+    public JsonParser getParser()
+    {
+        return parser;
+    }
+
+    /**
+     * The reader of the current parser, which is replaced by {@link #resynchronize(long)}.
+     */
+    public StreamingRootReader getReader()
+    {
+        return reader;
+    }
+
+    /**
+     * Converts an offset of the current parser which is not shifted, such as the location of its error, to the offset in the file.
+     */
+    public long toFileOffset(long offset)
+    {
+        return offset < 0 ? -1 : base + offset;
+    }
+
+    /**
+     * Same as {@link #resynchronize(long)} for an error of the current parser.
+     *
+     * Jackson reports an unrecognized token such as {@code tru} after the character which ended it, which may be
+     * the quote of a string, so the scan for the next element starts at the start of the token instead.
+     */
+    public boolean resynchronize(JsonProcessingException error)
+            throws IOException
+    {
+        final long errorOffset = error.getLocation() != null ? toFileOffset(error.getLocation().getByteOffset()) : -1;
+        if (error instanceof JsonParseException && String.valueOf(error.getOriginalMessage()).startsWith("Unrecognized token")) {
+            final long tokenOffset = parser.getTokenLocation().getByteOffset();
+            if (tokenOffset >= readFrom && tokenOffset < errorOffset) {
+                return resynchronize(errorOffset, tokenOffset);
+            }
+        }
+        return resynchronize(errorOffset);
+    }
+
+    /**
+     * Gives up the current parser, which failed at {@code errorOffset} in the file while reading the records of a root array,
+     * and replaces it with a new one at the next element, or at the end of the file if no element is found.
+     * The skipped bytes are from {@link #getSkippedFrom()} until {@link #getSkippedTo()}.
+     *
+     * @return false if the parser was not reading the records of a root array, or the bytes at the error are no longer kept
+     */
+    public boolean resynchronize(long errorOffset)
+            throws IOException
+    {
+        // The parser has consumed the character at which it failed.
+        return resynchronize(errorOffset, errorOffset - 1);
+    }
+
+    // from is where the scan for the next element starts, out of any string.
+    private boolean resynchronize(long errorOffset, long from)
+            throws IOException
+    {
+        if (!reader.isInArray() || errorOffset <= 0) {
+            return false;
+        }
+        final List<JsonStreamContext> contexts = new ArrayList<>();
+        for (JsonStreamContext context = parser.getParsingContext(); context != null && !context.inRoot(); context = context.getParent()) {
+            contexts.add(0, context);
+        }
+        final int levels = reader.getDepth();
+        if (contexts.size() < levels || !contexts.get(levels - 1).inArray()) {
+            return false;
+        }
+
+        final InputStream rest;
+        try {
+            rest = input.rewind(from);
+        }
+        catch (IOException e) {
+            return false;
+        }
+        final long next = findNextElement(rest, from, contexts.size() - levels);
+        parser.close();
+        skippedFrom = from;
+
+        if (next < 0) {
+            skippedTo = input.getPosition();
+            base = skippedTo;
+            readFrom = skippedTo;
+            parser = new ShiftedJsonParser(factory.createParser(input.rewind(skippedTo)), base);
+            reader = new StreamingRootReader(parser, root);
+            reader.nextDocument();
+            return true;
+        }
+
+        final byte[] prefix = prefix(contexts.subList(0, levels));
+        skippedTo = next;
+        base = next - prefix.length;
+        readFrom = next;
+        parser = new ShiftedJsonParser(factory.createParser(new SequenceInputStream(new ByteArrayInputStream(prefix), input.rewind(next))), base);
+        reader = new StreamingRootReader(parser, root);
+        if (!reader.resumeArray(levels)) {
+            throw new IOException("Failed to resume reading the root array");
+        }
+        return true;
+    }
+
+    /**
+     * Gives up the current parser, which failed on a line of JSON Lines, and replaces it with a new one at the next line,
+     * or at the end of the file if the line is the last one. The skipped bytes are from {@link #getSkippedFrom()},
+     * the start of the line, until {@link #getSkippedTo()}, after its line break.
+     *
+     * @param documentEnd the offset in the file after the last document which was read, after which the failed line starts
+     */
+    public void resynchronizeLine(long documentEnd)
+            throws IOException
+    {
+        // A line longer than what is kept is taken to start at the first byte kept, which is within it or in whitespace before it.
+        final long from = Math.max(documentEnd, input.getRewindableFrom());
+        final InputStream rest = input.rewind(from);
+        parser.close();
+
+        skippedFrom = -1;
+        long offset = from;
+        for (int b = rest.read(); b >= 0; b = rest.read()) {
+            offset++;
+            if (skippedFrom < 0) {
+                // The line starts at the first byte other than whitespace, as a line break may end the last document.
+                if (b != ' ' && b != '\t' && b != '\n' && b != '\r') {
+                    skippedFrom = offset - 1;
+                }
+            }
+            else if (b == '\n') {
+                break;
+            }
+        }
+        if (skippedFrom < 0) {
+            skippedFrom = from;
+        }
+        skippedTo = offset;
+        base = offset;
+        readFrom = offset;
+        parser = new ShiftedJsonParser(factory.createParser(input.rewind(offset)), base);
+        reader = new StreamingRootReader(parser, root);
+    }
+
+    public long getSkippedFrom()
+    {
+        return skippedFrom;
+    }
+
+    public long getSkippedTo()
+    {
+        return skippedTo;
+    }
+
+    @Override
+    public void close()
+            throws IOException
+    {
+        parser.close();
+    }
+
+    // Scans for the start of the next element of the root array, starting at a depth of objects and arrays within the root array:
+    // after a comma out of any object, array and string, or at the end of the root array.
+    // An opening brace at which the parser failed, or right after whitespace there, such as a line break in a string,
+    // is taken as the start of the next element, which follows a truncated one.
+    // Returns -1 at the end of the input.
+    static long findNextElement(InputStream in, long from, int depth)
+            throws IOException
+    {
+        boolean atError = true;
+        boolean inString = false;
+        boolean escaped = false;
+        for (long offset = from; ; offset++) {
+            final int b = in.read();
+            if (b < 0) {
+                return -1;
+            }
+            if (atError) {
+                if (b == '{') {
+                    return offset;
+                }
+                atError = b == ' ' || b == '\t' || b == '\n' || b == '\r';
+                if (atError) {
+                    continue;
+                }
+            }
+            if (inString) {
+                if (escaped) {
+                    escaped = false;
+                }
+                else if (b == '\\') {
+                    escaped = true;
+                }
+                else if (b == '"') {
+                    inString = false;
+                }
+                continue;
+            }
+            switch (b) {
+                case '"':
+                    inString = true;
+                    break;
+                case '{':
+                case '[':
+                    depth++;
+                    break;
+                case '}':
+                case ']':
+                    if (depth > 0) {
+                        depth--;
+                    }
+                    else if (b == ']') {
+                        return offset;
+                    }
+                    break;
+                case ',':
+                    if (depth == 0) {
+                        return offset + 1;
+                    }
+                    break;
+                default:
+                    break;
+            }
+        }
+    }
+
+    // Opens the objects and arrays of the path to the root array, the last of the contexts
+    private static byte[] prefix(List<JsonStreamContext> contexts)
+    {
+        final StringBuilder prefix = new StringBuilder();
+        for (int i = 0; i < contexts.size(); i++) {
+            prefix.append(contexts.get(i).inObject() && i < contexts.size() - 1 ? "{\"\":" : "[");
+        }
+        return prefix.toString().getBytes(StandardCharsets.UTF_8);
+    }
+
+    // Shifts the locations of a parser which starts reading at an offset in the file
+    private static class ShiftedJsonParser
+            extends JsonParserDelegate
+    {
+        private final long shift;
+
+        ShiftedJsonParser(JsonParser parser, long shift)
+        {
+            super(parser);
+            this.shift = shift;
+        }
+
+        @Override
+        public JsonLocation getTokenLocation()
+        {
+            return shift(super.getTokenLocation());
+        }
+
+        @Override
+        public JsonLocation getCurrentLocation()
+        {
+            return shift(super.getCurrentLocation());
+        }
+
+        private JsonLocation shift(JsonLocation location)
+        {
+            return new JsonLocation(location.getSourceRef(), location.getByteOffset() + shift, location.getCharOffset(),
+                    location.getLineNr(), location.getColumnNr());
+        }
+    }
+}
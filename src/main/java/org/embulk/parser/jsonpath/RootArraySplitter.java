@@ -0,0 +1,321 @@
+package org.embulk.parser.jsonpath;
+
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.NullNode;
+import org.embulk.parser.jsonpath.ParserMetrics.SkipReason;
+import org.embulk.spi.DataException;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.List;
+import java.util.Locale;
+import java.util.Optional;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+import static java.lang.String.format;
+
+/**
+ * Parses the elements of a root array in a local file on a pool of worker threads.
+ *
+ * The calling thread scans the raw bytes once, following quotes, escapes and the depth of brackets, to find
+ * where each element of the array starts and ends. Elements are grouped into chunks of about a given number of bytes,
+ * and each chunk is parsed on a worker thread. Records and invalid elements are passed on in the order of the file.
+ * An element which fails to parse is skipped on its own, since its bounds are known.
+ */
+public class RootArraySplitter
+        implements AutoCloseable
+{
+    private static final int READ_BUFFER_SIZE = 64 * 1024;
+
+    private final ObjectMapper mapper;
+    private final long chunkBytes;
+    private final ParserMetrics metrics;
+    private final int maxInFlight;
+    private final ExecutorService executor;
+    private final Deque<Future<List<Object>>> inFlight = new ArrayDeque<>();
+
+    public RootArraySplitter(ObjectMapper mapper, int threads, long chunkBytes, ParserMetrics metrics)
+    {
+        this.mapper = mapper;
+        this.chunkBytes = chunkBytes;
+        this.metrics = metrics;
+        this.maxInFlight = threads * 2;
+        this.executor = Executors.newFixedThreadPool(threads, runnable -> {
+            Thread thread = new Thread(runnable, "embulk-parser-jsonpath-split");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    /**
+     * Parses the elements of the array whose opening bracket is at {@code arrayStart} in the file.
+     * Invalid elements, and the last element of an array which is not closed, are passed to the handler as invalid JSON.
+     */
+    public void parse(FileChannel file, long arrayStart, Consumer<JsonNode> emitter, InvalidRecordHandler invalidRecords)
+            throws IOException
+    {
+        final ByteBuffer buffer = ByteBuffer.allocate(READ_BUFFER_SIZE);
+        Chunk chunk = new Chunk(file, arrayStart + 1);
+        boolean inString = false;
+        boolean escaped = false;
+        boolean afterComma = false;
+        int depth = 0;
+        long elementStart = -1;
+        long elementEnd = -1;
+
+        long position = arrayStart + 1;
+        while (true) {
+            buffer.clear();
+            final int read = file.read(buffer, position);
+            if (read < 0) {
+                break;
+            }
+            final byte[] bytes = buffer.array();
+            for (int i = 0; i < read; i++, position++) {
+                final byte b = bytes[i];
+                if (inString) {
+                    if (escaped) {
+                        escaped = false;
+                    }
+                    else if (b == '\\') {
+                        escaped = true;
+                    }
+                    else if (b == '"') {
+                        inString = false;
+                    }
+                    elementEnd = position + 1;
+                    continue;
+                }
+                switch (b) {
+                    case ' ':
+                    case '\t':
+                    case '\n':
+                    case '\r':
+                        continue;
+                    case ',':
+                        if (depth == 0) {
+                            // An empty element is added as such, so that it is reported as invalid JSON.
+                            chunk = addElement(chunk, elementStart >= 0 ? elementStart : position, elementStart >= 0 ? elementEnd : position,
+                                    emitter, invalidRecords);
+                            elementStart = -1;
+                            afterComma = true;
+                            continue;
+                        }
+                        break;
+                    case ']':
+                        if (depth == 0) {
+                            if (elementStart >= 0 || afterComma) {
+                                chunk = addElement(chunk, elementStart >= 0 ? elementStart : position, elementStart >= 0 ? elementEnd : position,
+                                        emitter, invalidRecords);
+                            }
+                            submit(chunk, emitter, invalidRecords);
+                            finish(emitter, invalidRecords);
+                            return;
+                        }
+                        depth--;
+                        break;
+                    case '}':
+                        if (depth > 0) {
+                            depth--;
+                        }
+                        break;
+                    case '{':
+                    case '[':
+                        depth++;
+                        break;
+                    case '"':
+                        inString = true;
+                        break;
+                    default:
+                        break;
+                }
+                if (elementStart < 0) {
+                    elementStart = position;
+                }
+                elementEnd = position + 1;
+            }
+        }
+
+        // The file ends in the array. Whatever follows the last complete element may be cut short, even a number.
+        submit(chunk, emitter, invalidRecords);
+        finish(emitter, invalidRecords);
+        invalidRecords.skipOrThrow(new DataException(format(Locale.ENGLISH, "Unexpected end of file in the root array at byte %d", position)),
+                SkipReason.INVALID_JSON, InvalidRecord.ofRange(invalidRecords.getFileIndex(), elementStart >= 0 ? elementStart : position, position,
+                        Optional.empty()));
+    }
+
+    @Override
+    public void close()
+    {
+        for (Future<List<Object>> future : inFlight) {
+            future.cancel(true);
+        }
+        inFlight.clear();
+        executor.shutdownNow();
+        try {
+            executor.awaitTermination(1, TimeUnit.MINUTES);
+        }
+        catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private Chunk addElement(Chunk chunk, long start, long end, Consumer<JsonNode> emitter, InvalidRecordHandler invalidRecords)
+    {
+        chunk.add(start, end);
+        if (end - chunk.start < chunkBytes) {
+            return chunk;
+        }
+        submit(chunk, emitter, invalidRecords);
+        return new Chunk(chunk.file, end);
+    }
+
+    private void submit(Chunk chunk, Consumer<JsonNode> emitter, InvalidRecordHandler invalidRecords)
+    {
+        if (chunk.count == 0) {
+            return;
+        }
+        inFlight.add(executor.submit(() -> parseChunk(chunk)));
+        while (inFlight.size() >= maxInFlight) {
+            forward(inFlight.poll(), emitter, invalidRecords);
+        }
+    }
+
+    private void finish(Consumer<JsonNode> emitter, InvalidRecordHandler invalidRecords)
+    {
+        while (!inFlight.isEmpty()) {
+            forward(inFlight.poll(), emitter, invalidRecords);
+        }
+    }
+
+    private void forward(Future<List<Object>> future, Consumer<JsonNode> emitter, InvalidRecordHandler invalidRecords)
+    {
+        final List<Object> results;
+        try {
+            results = future.get();
+        }
+        catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException(e);
+        }
+        catch (ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
+            }
+            if (e.getCause() instanceof Error) {
+                throw (Error) e.getCause();
+            }
+            throw new RuntimeException(e.getCause());
+        }
+        for (Object result : results) {
+            if (result instanceof InvalidElement) {
+                final InvalidElement invalid = (InvalidElement) result;
+                invalidRecords.skipOrThrow(new DataException(invalid.cause), SkipReason.INVALID_JSON,
+                        InvalidRecord.ofRange(invalidRecords.getFileIndex(), invalid.start, invalid.end, Optional.empty()));
+            }
+            else {
+                emitter.accept((JsonNode) result);
+            }
+        }
+    }
+
+    // Runs on a worker thread. The results are the records and invalid elements of the chunk in their order.
+    private List<Object> parseChunk(Chunk chunk)
+            throws IOException
+    {
+        final long end = chunk.ends[chunk.count - 1];
+        if (end - chunk.start > Integer.MAX_VALUE - 8) {
+            throw new DataException(format(Locale.ENGLISH, "Too large element in the root array at byte %d", chunk.start));
+        }
+        final byte[] bytes = new byte[(int) (end - chunk.start)];
+        final ByteBuffer buffer = ByteBuffer.wrap(bytes);
+        while (buffer.hasRemaining()) {
+            if (chunk.file.read(buffer, chunk.start + buffer.position()) < 0) {
+                throw new IOException(format(Locale.ENGLISH, "Unexpected end of file at byte %d", chunk.start + buffer.position()));
+            }
+        }
+
+        final long start = System.nanoTime();
+        final List<Object> results = new ArrayList<>(chunk.count);
+        for (int i = 0; i < chunk.count; i++) {
+            final int offset = (int) (chunk.starts[i] - chunk.start);
+            final int length = (int) (chunk.ends[i] - chunk.starts[i]);
+            try {
+                results.add(parseElement(bytes, offset, length));
+            }
+            catch (IOException e) {
+                results.add(new InvalidElement(chunk.starts[i], chunk.ends[i], e));
+            }
+        }
+        metrics.addParseNanos(System.nanoTime() - start);
+        return results;
+    }
+
+    private JsonNode parseElement(byte[] bytes, int offset, int length)
+            throws IOException
+    {
+        try (final JsonParser parser = mapper.getFactory().createParser(bytes, offset, length)) {
+            if (parser.nextToken() == null) {
+                throw new IOException("Empty element in the root array");
+            }
+            final JsonNode record = mapper.readTree(parser);
+            if (parser.nextToken() != null) {
+                throw new IOException(format(Locale.ENGLISH, "Unexpected token %s after an element of the root array", parser.getCurrentToken()));
+            }
+            return record != null ? record : NullNode.getInstance();
+        }
+    }
+
+    // Elements of the array in a range of the file, with their bounds as offsets in the file
+    private static final class Chunk
+    {
+        private final FileChannel file;
+        private final long start;
+        private long[] starts = new long[16];
+        private long[] ends = new long[16];
+        private int count;
+
+        private Chunk(FileChannel file, long start)
+        {
+            this.file = file;
+            this.start = start;
+        }
+
+        private void add(long elementStart, long elementEnd)
+        {
+            if (count == starts.length) {
+                starts = Arrays.copyOf(starts, count * 2);
+                ends = Arrays.copyOf(ends, count * 2);
+            }
+            starts[count] = elementStart;
+            ends[count] = elementEnd;
+            count++;
+        }
+    }
+
+    private static final class InvalidElement
+    {
+        private final long start;
+        private final long end;
+        private final IOException cause;
+
+        private InvalidElement(long start, long end, IOException cause)
+        {
+            this.start = start;
+            this.end = end;
+            this.cause = cause;
+        }
+    }
+}
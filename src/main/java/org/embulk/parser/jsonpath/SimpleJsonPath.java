@@ -0,0 +1,255 @@
+package org.embulk.parser.jsonpath;
+
+import com.fasterxml.jackson.databind.JsonNode;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Objects;
+import java.util.Optional;
+
+/**
+ * A JSONPath which consists only of property names, array indexes and an optional trailing wildcard,
+ * such as {@code $.results}, {@code $.data[*]} or {@code $['a'].b[0]}.
+ *
+ * Such a path can be followed without Jayway, either on a token stream or on a tree.
+ * Following it never throws; a missing property or index just yields {@code null}.
+ */
+public class SimpleJsonPath
+{
+    public static final class Segment
+    {
+        private final String name;
+        private final int index;
+
+        private Segment(String name, int index)
+        {
+            this.name = name;
+            this.index = index;
+        }
+
+        public boolean isName()
+        {
+            return name != null;
+        }
+
+        public String getName()
+        {
+            return name;
+        }
+
+        public int getIndex()
+        {
+            return index;
+        }
+
+        JsonNode select(JsonNode node)
+        {
+            if (name != null) {
+                return node.isObject() ? node.get(name) : null;
+            }
+            if (!node.isArray()) {
+                return null;
+            }
+            return node.get(index >= 0 ? index : node.size() + index);
+        }
+
+        @Override
+        public boolean equals(Object o)
+        {
+            if (!(o instanceof Segment)) {
+                return false;
+            }
+            Segment other = (Segment) o;
+            return index == other.index && Objects.equals(name, other.name);
+        }
+
+        @Override
+        public int hashCode()
+        {
+            return Objects.hash(name, index);
+        }
+
+        @Override
+        public String toString()
+        {
+            return isName() ? "['" + name + "']" : "[" + index + "]";
+        }
+    }
+
+    private final String path;
+    private final List<Segment> segments;
+    private final boolean wildcard;
+
+    private SimpleJsonPath(String path, List<Segment> segments, boolean wildcard)
+    {
+        this.path = path;
+        this.segments = Collections.unmodifiableList(segments);
+        this.wildcard = wildcard;
+    }
+
+    /**
+     * Parses {@code path} as a simple path.
+     *
+     * @return the parsed path, or empty if the path uses filters, deep scans, functions, unions
+     *         or a wildcard in the middle, all of which are left to Jayway.
+     */
+    public static Optional<SimpleJsonPath> parse(String path)
+    {
+        String p = path.trim();
+        int pos;
+        if (p.startsWith("$")) {
+            pos = 1;
+        }
+        else if (p.startsWith("@") || p.isEmpty()) {
+            return Optional.empty();
+        }
+        else {
+            // Jayway treats "a.b" as "$.a.b".
+            p = "$." + p;
+            pos = 1;
+        }
+
+        List<Segment> segments = new ArrayList<>();
+        boolean wildcard = false;
+        while (pos < p.length()) {
+            if (wildcard) {
+                return Optional.empty();
+            }
+            char c = p.charAt(pos);
+            if (c == '.') {
+                pos++;
+                if (pos < p.length() && p.charAt(pos) == '*') {
+                    wildcard = true;
+                    pos++;
+                    continue;
+                }
+                int end = pos;
+                while (end < p.length() && isNameChar(p.charAt(end))) {
+                    end++;
+                }
+                if (end == pos || (end < p.length() && p.charAt(end) != '.' && p.charAt(end) != '[')) {
+                    return Optional.empty();
+                }
+                segments.add(new Segment(p.substring(pos, end), 0));
+                pos = end;
+            }
+            else if (c == '[') {
+                int close = p.indexOf(']', pos);
+                if (close < 0) {
+                    return Optional.empty();
+                }
+                String inner = p.substring(pos + 1, close).trim();
+                if (inner.equals("*")) {
+                    wildcard = true;
+                }
+                else if (inner.length() >= 2 && isQuote(inner.charAt(0)) && inner.charAt(inner.length() - 1) == inner.charAt(0)) {
+                    String name = inner.substring(1, inner.length() - 1);
+                    if (name.indexOf('\'') >= 0 || name.indexOf('"') >= 0 || name.indexOf('\\') >= 0) {
+                        return Optional.empty();
+                    }
+                    segments.add(new Segment(name, 0));
+                }
+                else if (isInteger(inner)) {
+                    try {
+                        segments.add(new Segment(null, Integer.parseInt(inner)));
+                    }
+                    catch (NumberFormatException e) {
+                        return Optional.empty();
+                    }
+                }
+                else {
+                    return Optional.empty();
+                }
+                pos = close + 1;
+            }
+            else {
+                return Optional.empty();
+            }
+        }
+        return Optional.of(new SimpleJsonPath(path, segments, wildcard));
+    }
+
+    /**
+     * Creates a path which reads the property {@code name} of the root, taken literally.
+     */
+    public static SimpleJsonPath ofName(String name)
+    {
+        return new SimpleJsonPath(name, Collections.singletonList(new Segment(name, 0)), false);
+    }
+
+    /**
+     * Follows the path from {@code node}.
+     *
+     * @return the value at the path, or null if some segment does not exist
+     */
+    public JsonNode evaluate(JsonNode node)
+    {
+        for (int i = 0; i < segments.size() && node != null; i++) {
+            node = segments.get(i).select(node);
+        }
+        return node;
+    }
+
+    public String getPath()
+    {
+        return path;
+    }
+
+    public List<Segment> getSegments()
+    {
+        return segments;
+    }
+
+    /**
+     * Whether the path ends with {@code [*]} or {@code .*}.
+     */
+    public boolean hasWildcard()
+    {
+        return wildcard;
+    }
+
+    /**
+     * Whether the path can be followed on a forward-only token stream,
+     * that is, it has no index counted from the end of an array.
+     */
+    public boolean isStreamable()
+    {
+        for (Segment segment : segments) {
+            if (!segment.isName() && segment.getIndex() < 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    @Override
+    public String toString()
+    {
+        return path;
+    }
+
+    private static boolean isNameChar(char c)
+    {
+        return Character.isLetterOrDigit(c) || c == '_' || c == '-';
+    }
+
+    private static boolean isQuote(char c)
+    {
+        return c == '\'' || c == '"';
+    }
+
+    private static boolean isInteger(String s)
+    {
+        int start = s.startsWith("-") ? 1 : 0;
+        if (s.length() == start) {
+            return false;
+        }
+        for (int i = start; i < s.length(); i++) {
+            if (s.charAt(i) < '0' || s.charAt(i) > '9') {
+                return false;
+            }
+        }
+        return true;
+    }
+}
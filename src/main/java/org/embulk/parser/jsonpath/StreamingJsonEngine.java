@@ -0,0 +1,150 @@
+package org.embulk.parser.jsonpath;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.JsonNode;
+import org.embulk.parser.jsonpath.JsonpathParserPlugin.Format;
+import org.embulk.parser.jsonpath.JsonpathParserPlugin.StreamingRecordReader;
+import org.embulk.parser.jsonpath.ParserMetrics.SkipReason;
+import org.embulk.spi.DataException;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Locale;
+import java.util.Optional;
+import java.util.function.Consumer;
+
+import static java.lang.String.format;
+import static org.embulk.parser.jsonpath.JsonpathParserPlugin.errorOffset;
+
+/**
+ * Follows a {@link SimpleJsonPath} root on a Jackson token stream, so that one record at a time is read
+ * instead of whole documents. Malformed text JSON within a root array is skipped up to the next element,
+ * and a malformed document of JSON Lines up to the next line.
+ */
+public class StreamingJsonEngine
+        implements JsonEngine
+{
+    private final SimpleJsonPath root;
+    private final Format format;
+
+    public StreamingJsonEngine(SimpleJsonPath root, Format format)
+    {
+        this.root = root;
+        this.format = format;
+    }
+
+    @Override
+    public boolean isStreaming()
+    {
+        return true;
+    }
+
+    @Override
+    public void parseFile(InputStream file, Consumer<JsonNode> emitter, StreamingRecordReader streamingReader, ParserMetrics metrics,
+            InvalidRecordHandler invalidRecords)
+    {
+        if (format != Format.JSON) {
+            parseDocuments(file, streamingReader, invalidRecords);
+        }
+        else {
+            parseDocument(file, streamingReader, invalidRecords);
+        }
+    }
+
+    private void parseDocuments(InputStream file, StreamingRecordReader streamingReader, InvalidRecordHandler invalidRecords)
+    {
+        long documentStart = 0;
+        // The end of the last document which was read, after which a malformed line of JSON Lines starts
+        long documentEnd = 0;
+        try (final RootArrayResynchronizer resync = new RootArrayResynchronizer(format.getJsonFactory(), root, file)) {
+            while (true) {
+                try {
+                    while (resync.getReader().nextDocument()) {
+                        if (invalidRecords.isWriting()) {
+                            documentStart = resync.getParser().getTokenLocation().getByteOffset();
+                        }
+                        if (resync.getReader().seek()) {
+                            readRecords(resync, streamingReader, invalidRecords);
+                        }
+                        else {
+                            invalidRecords.skipOrThrow(new DataException(format(Locale.ENGLISH,
+                                    "Failed to get root json path='%s'", root)), SkipReason.ROOT_NOT_FOUND);
+                        }
+                        resync.getReader().finishDocument();
+                        documentEnd = resync.getParser().getCurrentLocation().getByteOffset();
+                    }
+                    return;
+                }
+                catch (IOException e) {
+                    if (format == Format.JSONL && e instanceof JsonProcessingException) {
+                        resync.resynchronizeLine(documentEnd);
+                        invalidRecords.skipOrThrow(new DataException(e), SkipReason.INVALID_JSON,
+                                InvalidRecord.ofRange(invalidRecords.getFileIndex(), resync.getSkippedFrom(), resync.getSkippedTo(), Optional.empty()));
+                        documentEnd = resync.getSkippedTo();
+                        continue;
+                    }
+                    invalidRecords.skipOrThrow(new DataException(e), SkipReason.INVALID_JSON,
+                            InvalidRecord.ofRange(invalidRecords.getFileIndex(), documentStart, resync.toFileOffset(errorOffset(e)), Optional.empty()));
+                    return;
+                }
+            }
+        }
+        catch (IOException e) {
+            invalidRecords.skipOrThrow(new DataException(e), SkipReason.INVALID_JSON,
+                    InvalidRecord.ofRange(invalidRecords.getFileIndex(), documentStart, errorOffset(e), Optional.empty()));
+        }
+    }
+
+    private void parseDocument(InputStream file, StreamingRecordReader streamingReader, InvalidRecordHandler invalidRecords)
+    {
+        try (final RootArrayResynchronizer resync = new RootArrayResynchronizer(format.getJsonFactory(), root, file)) {
+            try {
+                if (!resync.getReader().nextDocument() || !resync.getReader().seek()) {
+                    invalidRecords.skipOrThrow(new DataException(format(Locale.ENGLISH,
+                            "Failed to get root json path='%s'", root)), SkipReason.ROOT_NOT_FOUND);
+                    return;
+                }
+                readRecords(resync, streamingReader, invalidRecords);
+            }
+            catch (IOException e) {
+                invalidRecords.skipOrThrow(new DataException(e), SkipReason.INVALID_JSON,
+                        InvalidRecord.ofRange(invalidRecords.getFileIndex(), 0, resync.toFileOffset(errorOffset(e)), Optional.empty()));
+            }
+        }
+        catch (IOException e) {
+            invalidRecords.skipOrThrow(new DataException(e), SkipReason.INVALID_JSON,
+                    InvalidRecord.ofRange(invalidRecords.getFileIndex(), 0, errorOffset(e), Optional.empty()));
+        }
+    }
+
+    // Reads the records of the root. Malformed text JSON within a root array is skipped up to the next element,
+    // and the skipped bytes are counted as invalid JSON. Other malformed JSON is thrown.
+    private void readRecords(RootArrayResynchronizer resync, StreamingRecordReader streamingReader,
+            InvalidRecordHandler invalidRecords)
+            throws IOException
+    {
+        // The start of the current record, from which skipped bytes are written to the invalid record output
+        long recordStart = -1;
+        while (true) {
+            try {
+                while (resync.getReader().next()) {
+                    if (invalidRecords.isWriting()) {
+                        recordStart = resync.getParser().getTokenLocation().getByteOffset();
+                    }
+                    streamingReader.read(resync.getParser());
+                    recordStart = -1;
+                }
+                return;
+            }
+            catch (JsonProcessingException e) {
+                if (!format.isText() || !resync.resynchronize(e)) {
+                    throw e;
+                }
+                invalidRecords.skipOrThrow(new DataException(e), SkipReason.INVALID_JSON,
+                        InvalidRecord.ofRange(invalidRecords.getFileIndex(), recordStart >= 0 ? recordStart : resync.getSkippedFrom(),
+                                resync.getSkippedTo(), Optional.empty()));
+                recordStart = -1;
+            }
+        }
+    }
+}
@@ -0,0 +1,217 @@
+package org.embulk.parser.jsonpath;
+
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+
+import java.io.IOException;
+
+/**
+ * Walks a Jackson token stream down to a {@link SimpleJsonPath} root and then steps through
+ * the root value one record at a time, so that only a single record has to be materialized.
+ */
+public class StreamingRootReader
+{
+    private enum State
+    {
+        SINGLE, ARRAY, OBJECT, DONE
+    }
+
+    private final JsonParser parser;
+    private final SimpleJsonPath root;
+    private State state;
+    private int depth;
+
+    public StreamingRootReader(JsonParser parser, SimpleJsonPath root)
+    {
+        this.parser = parser;
+        this.root = root;
+    }
+
+    /**
+     * Moves the parser to the first token of the next document in the stream.
+     *
+     * @return false if the stream has no more documents
+     */
+    public boolean nextDocument()
+            throws IOException
+    {
+        state = State.DONE;
+        depth = 0;
+        return parser.nextToken() != null;
+    }
+
+    /**
+     * Moves the parser from the first token of a document to the value at the root path.
+     *
+     * @return false if the document has no value at the root path
+     */
+    public boolean seek()
+            throws IOException
+    {
+        JsonToken token = parser.getCurrentToken();
+        for (SimpleJsonPath.Segment segment : root.getSegments()) {
+            token = segment.isName() ? seekField(token, segment.getName()) : seekElement(token, segment.getIndex());
+            if (token == null) {
+                return false;
+            }
+        }
+
+        if (token == JsonToken.START_ARRAY) {
+            state = State.ARRAY;
+            depth++;
+        }
+        else if (token == JsonToken.START_OBJECT && root.hasWildcard()) {
+            state = State.OBJECT;
+            depth++;
+        }
+        else if (root.hasWildcard()) {
+            state = State.DONE;
+        }
+        else {
+            state = State.SINGLE;
+        }
+        return true;
+    }
+
+    /**
+     * Moves the parser of a document which starts with the opening tokens of {@code levels} objects and arrays
+     * in place of the root path, the last of which is the root array, into the root array.
+     * Each object has a single field before the next level.
+     *
+     * @return false if the document does not start that way
+     */
+    public boolean resumeArray(int levels)
+            throws IOException
+    {
+        state = State.DONE;
+        depth = 0;
+        for (int i = 0; i < levels; i++) {
+            JsonToken token = parser.nextToken();
+            if (token == JsonToken.START_OBJECT && i < levels - 1) {
+                if (parser.nextToken() != JsonToken.FIELD_NAME) {
+                    return false;
+                }
+            }
+            else if (token != JsonToken.START_ARRAY) {
+                return false;
+            }
+            depth++;
+        }
+        state = State.ARRAY;
+        return true;
+    }
+
+    /**
+     * Whether the records are elements of an array, which are read one after another.
+     */
+    public boolean isInArray()
+    {
+        return state == State.ARRAY;
+    }
+
+    /**
+     * The number of objects and arrays the parser is in, from the start of the document to the root.
+     */
+    public int getDepth()
+    {
+        return depth;
+    }
+
+    /**
+     * Skips whatever is left of the current document, so that {@link #nextDocument()} can move to the next one.
+     */
+    public void finishDocument()
+            throws IOException
+    {
+        while (depth > 0) {
+            JsonToken token = parser.nextToken();
+            if (token == null) {
+                return;
+            }
+            if (token == JsonToken.START_OBJECT || token == JsonToken.START_ARRAY) {
+                parser.skipChildren();
+            }
+            else if (token == JsonToken.END_OBJECT || token == JsonToken.END_ARRAY) {
+                depth--;
+            }
+        }
+    }
+
+    /**
+     * Moves the parser to the first token of the next record.
+     * The caller must consume the whole record value before calling this method again.
+     *
+     * @return false if there are no more records
+     */
+    public boolean next()
+            throws IOException
+    {
+        switch (state) {
+            case SINGLE:
+                state = State.DONE;
+                return true;
+            case ARRAY: {
+                JsonToken token = parser.nextToken();
+                if (token == null || token == JsonToken.END_ARRAY) {
+                    state = State.DONE;
+                    depth--;
+                    return false;
+                }
+                return true;
+            }
+            case OBJECT: {
+                JsonToken token = parser.nextToken();
+                if (token != JsonToken.FIELD_NAME) {
+                    state = State.DONE;
+                    depth--;
+                    return false;
+                }
+                parser.nextToken();
+                return true;
+            }
+            default:
+                return false;
+        }
+    }
+
+    private JsonToken seekField(JsonToken token, String name)
+            throws IOException
+    {
+        if (token != JsonToken.START_OBJECT) {
+            parser.skipChildren();
+            return null;
+        }
+        depth++;
+        while (parser.nextToken() == JsonToken.FIELD_NAME) {
+            String fieldName = parser.getCurrentName();
+            JsonToken value = parser.nextToken();
+            if (name.equals(fieldName)) {
+                return value;
+            }
+            parser.skipChildren();
+        }
+        depth--;
+        return null;
+    }
+
+    private JsonToken seekElement(JsonToken token, int index)
+            throws IOException
+    {
+        if (token != JsonToken.START_ARRAY) {
+            parser.skipChildren();
+            return null;
+        }
+        depth++;
+        for (int i = 0; ; i++) {
+            JsonToken value = parser.nextToken();
+            if (value == null || value == JsonToken.END_ARRAY) {
+                depth--;
+                return null;
+            }
+            if (i == index) {
+                return value;
+            }
+            parser.skipChildren();
+        }
+    }
+}
@@ -0,0 +1,68 @@
+package org.embulk.parser.jsonpath;
+
+import org.embulk.spi.Column;
+import org.embulk.spi.DataException;
+
+import java.time.Instant;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Remembers the instants parsed from the most recently used timestamp strings of a column,
+ * so that repeated values, like the second-granularity timestamps of event logs, are parsed only once.
+ *
+ * An instance is confined to one thread.
+ */
+public class TimestampCache
+        implements TimestampColumnParser
+{
+    private final Column column;
+    private final TimestampColumnParser parser;
+    private final Map<String, Instant> entries;
+    private long hits;
+    private long misses;
+
+    public TimestampCache(Column column, TimestampColumnParser parser, final int size)
+    {
+        this.column = column;
+        this.parser = parser;
+        this.entries = new LinkedHashMap<String, Instant>(16, 0.75f, true)
+        {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, Instant> eldest)
+            {
+                return size() > size;
+            }
+        };
+    }
+
+    @Override
+    public Instant parse(String value)
+            throws DataException
+    {
+        Instant instant = entries.get(value);
+        if (instant != null) {
+            hits++;
+            return instant;
+        }
+        misses++;
+        instant = parser.parse(value);
+        entries.put(value, instant);
+        return instant;
+    }
+
+    public Column getColumn()
+    {
+        return column;
+    }
+
+    public long getHits()
+    {
+        return hits;
+    }
+
+    public long getMisses()
+    {
+        return misses;
+    }
+}
@@ -0,0 +1,31 @@
+package org.embulk.parser.jsonpath;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import org.embulk.parser.jsonpath.cast.StringCast;
+import org.embulk.spi.DataException;
+import org.embulk.util.timestamp.TimestampFormatter;
+
+import java.time.Instant;
+
+/**
+ * Parses the string values of one timestamp column.
+ */
+public interface TimestampColumnParser
+{
+    Instant parse(String value)
+            throws DataException;
+
+    /**
+     * Parses a JSON value, which is not null. A value other than a string is parsed as its text by default.
+     */
+    default Instant parse(JsonNode value)
+            throws DataException
+    {
+        return parse(value.asText());
+    }
+
+    static TimestampColumnParser of(TimestampFormatter formatter)
+    {
+        return value -> StringCast.asTimestamp(value, formatter);
+    }
+}
@@ -0,0 +1,78 @@
+package org.embulk.parser.jsonpath;
+
+import com.fasterxml.jackson.annotation.JsonCreator;
+import com.fasterxml.jackson.annotation.JsonValue;
+import org.embulk.config.ConfigException;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.time.Instant;
+import java.util.Locale;
+
+import static java.lang.String.format;
+
+/**
+ * The unit of a numeric timestamp, counted from the epoch.
+ */
+public enum TimestampUnit
+{
+    SECONDS("s", 1_000_000_000L),
+    MILLISECONDS("ms", 1_000_000L),
+    MICROSECONDS("us", 1_000L),
+    NANOSECONDS("ns", 1L);
+
+    private static final BigDecimal NANOS_PER_SECOND = BigDecimal.valueOf(1_000_000_000L);
+
+    private final String name;
+    private final long nanosPerUnit;
+    private final long unitsPerSecond;
+
+    TimestampUnit(String name, long nanosPerUnit)
+    {
+        this.name = name;
+        this.nanosPerUnit = nanosPerUnit;
+        this.unitsPerSecond = 1_000_000_000L / nanosPerUnit;
+    }
+
+    /**
+     * @throws java.time.DateTimeException if the instant is out of range
+     */
+    public Instant toInstant(long value)
+    {
+        return Instant.ofEpochSecond(Math.floorDiv(value, unitsPerSecond), Math.floorMod(value, unitsPerSecond) * nanosPerUnit);
+    }
+
+    /**
+     * Converts a fractional value, dropping digits finer than a nanosecond.
+     *
+     * @throws java.time.DateTimeException if the instant is out of range
+     * @throws ArithmeticException if the instant is out of range
+     */
+    public Instant toInstant(BigDecimal value)
+    {
+        BigDecimal nanos = value.movePointRight(9).divide(BigDecimal.valueOf(unitsPerSecond), 0, RoundingMode.FLOOR);
+        BigDecimal[] secondsAndNanos = nanos.divideAndRemainder(NANOS_PER_SECOND);
+        long seconds = secondsAndNanos[0].longValueExact();
+        long nanoAdjustment = secondsAndNanos[1].longValue();
+        return Instant.ofEpochSecond(seconds, nanoAdjustment);
+    }
+
+    @JsonValue
+    @Override
+    public String toString()
+    {
+        return name;
+    }
+
+    @JsonCreator
+    public static TimestampUnit fromString(String value)
+    {
+        for (TimestampUnit unit : values()) {
+            if (unit.name.equals(value)) {
+                return unit;
+            }
+        }
+        throw new ConfigException(format(Locale.ENGLISH,
+                "Unknown unit '%s'. Supported units are s, ms, us and ns", value));
+    }
+}
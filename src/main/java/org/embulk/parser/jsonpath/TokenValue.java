@@ -0,0 +1,111 @@
+package org.embulk.parser.jsonpath;
+
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+
+import java.io.IOException;
+import java.util.Arrays;
+
+/**
+ * The value of a column taken from a scalar token of a record, without building a JsonNode of it.
+ *
+ * An instance belongs to one column and is reused from record to record. Only strings and numbers which
+ * Jackson holds as a long or a double are kept; any other value of the column is built as a JsonNode.
+ * The characters of a string are copied from the text buffer of the parser into a buffer of the instance,
+ * so no String is made of them unless a String is asked for.
+ */
+public class TokenValue
+{
+    private JsonToken token;
+    private char[] text = new char[64];
+    private int textLength;
+    private long longValue;
+    private double doubleValue;
+
+    /**
+     * Whether the current token of {@code parser} can be kept by {@link #read(JsonParser)}.
+     */
+    public static boolean accepts(JsonParser parser)
+            throws IOException
+    {
+        switch (parser.getCurrentToken()) {
+            case VALUE_STRING:
+                return true;
+            case VALUE_NUMBER_INT:
+                return parser.getNumberType() != JsonParser.NumberType.BIG_INTEGER;
+            case VALUE_NUMBER_FLOAT:
+                return parser.getNumberType() != JsonParser.NumberType.BIG_DECIMAL;
+            default:
+                return false;
+        }
+    }
+
+    public void read(JsonParser parser)
+            throws IOException
+    {
+        token = parser.getCurrentToken();
+        switch (token) {
+            case VALUE_STRING:
+                textLength = parser.getTextLength();
+                if (text.length < textLength) {
+                    text = Arrays.copyOf(text, Math.max(textLength, text.length * 2));
+                }
+                System.arraycopy(parser.getTextCharacters(), parser.getTextOffset(), text, 0, textLength);
+                break;
+            case VALUE_NUMBER_INT:
+                longValue = parser.getLongValue();
+                break;
+            default:
+                doubleValue = parser.getDoubleValue();
+                break;
+        }
+    }
+
+    public void clear()
+    {
+        token = null;
+    }
+
+    public boolean isPresent()
+    {
+        return token != null;
+    }
+
+    public boolean isText()
+    {
+        return token == JsonToken.VALUE_STRING;
+    }
+
+    public boolean isLong()
+    {
+        return token == JsonToken.VALUE_NUMBER_INT;
+    }
+
+    public String getText()
+    {
+        return new String(text, 0, textLength);
+    }
+
+    /**
+     * The characters of a string, from index 0 to {@link #getTextLength()}.
+     */
+    public char[] getTextCharacters()
+    {
+        return text;
+    }
+
+    public int getTextLength()
+    {
+        return textLength;
+    }
+
+    public long getLongValue()
+    {
+        return longValue;
+    }
+
+    public double getDoubleValue()
+    {
+        return doubleValue;
+    }
+}
@@ -0,0 +1,214 @@
+package org.embulk.parser.jsonpath.cast;
+
+import java.math.BigInteger;
+
+/**
+ * Parses decimal strings into doubles, with the same results as {@link Double#parseDouble(String)}.
+ *
+ * Plain decimals such as {@code -123.456e-7} are converted exactly with Clinger's fast path when the digits
+ * and the power of ten fit in doubles, and otherwise with the Eisel-Lemire algorithm.
+ * Anything else, including the rare values the algorithm can not round with certainty, hexadecimal and
+ * special values, surrounding whitespace and invalid strings, is left to {@link Double#parseDouble(String)}.
+ */
+public final class FastDoubleParser
+{
+    private static final int MAX_MANTISSA_DIGITS = 19;
+    private static final int MIN_EXPONENT = -348;
+    private static final int MAX_EXPONENT = 347;
+    private static final int MAX_EXPLICIT_EXPONENT = 100000;
+
+    private static final double[] EXACT_POWERS_OF_TEN = {
+        1e0, 1e1, 1e2, 1e3, 1e4, 1e5, 1e6, 1e7, 1e8, 1e9, 1e10,
+        1e11, 1e12, 1e13, 1e14, 1e15, 1e16, 1e17, 1e18, 1e19, 1e20, 1e21, 1e22,
+    };
+
+    // The upper and the lower 64 bits of 10^e from MIN_EXPONENT, normalized to 128 bits and rounded down
+    private static final long[] POWERS_OF_TEN_HIGH = new long[MAX_EXPONENT - MIN_EXPONENT + 1];
+    private static final long[] POWERS_OF_TEN_LOW = new long[MAX_EXPONENT - MIN_EXPONENT + 1];
+
+    static {
+        BigInteger mask = BigInteger.ONE.shiftLeft(64).subtract(BigInteger.ONE);
+        for (int e = MIN_EXPONENT; e <= MAX_EXPONENT; e++) {
+            BigInteger power;
+            if (e >= 0) {
+                power = BigInteger.TEN.pow(e);
+                int shift = power.bitLength() - 128;
+                power = shift > 0 ? power.shiftRight(shift) : power.shiftLeft(-shift);
+            }
+            else {
+                BigInteger divisor = BigInteger.TEN.pow(-e);
+                power = BigInteger.ONE.shiftLeft(divisor.bitLength() + 127).divide(divisor);
+            }
+            POWERS_OF_TEN_HIGH[e - MIN_EXPONENT] = power.shiftRight(64).longValue();
+            POWERS_OF_TEN_LOW[e - MIN_EXPONENT] = power.and(mask).longValue();
+        }
+    }
+
+    private FastDoubleParser() {}
+
+    /**
+     * @throws NumberFormatException if the value is not a number, like {@link Double#parseDouble(String)}
+     */
+    public static double parseDouble(CharSequence value)
+            throws NumberFormatException
+    {
+        final int length = value.length();
+        int i = 0;
+        boolean negative = false;
+        if (length > 0 && (value.charAt(0) == '-' || value.charAt(0) == '+')) {
+            negative = value.charAt(0) == '-';
+            i++;
+        }
+
+        // Up to 19 significant digits, as an unsigned long, and the power of ten to multiply them by
+        long mantissa = 0;
+        int mantissaDigits = 0;
+        int exponent = 0;
+        boolean truncated = false;
+        boolean hasDigits = false;
+        boolean hasPoint = false;
+        for (; i < length; i++) {
+            char c = value.charAt(i);
+            if (c >= '0' && c <= '9') {
+                hasDigits = true;
+                int digit = c - '0';
+                if (mantissa == 0 && digit == 0) {
+                    if (hasPoint) {
+                        exponent--;
+                    }
+                }
+                else if (mantissaDigits < MAX_MANTISSA_DIGITS) {
+                    mantissa = mantissa * 10 + digit;
+                    mantissaDigits++;
+                    if (hasPoint) {
+                        exponent--;
+                    }
+                }
+                else {
+                    truncated |= digit != 0;
+                    if (!hasPoint) {
+                        exponent++;
+                    }
+                }
+            }
+            else if (c == '.' && !hasPoint) {
+                hasPoint = true;
+            }
+            else {
+                break;
+            }
+        }
+        if (!hasDigits) {
+            return Double.parseDouble(value.toString());
+        }
+
+        if (i < length && (value.charAt(i) == 'e' || value.charAt(i) == 'E')) {
+            i++;
+            boolean negativeExponent = false;
+            if (i < length && (value.charAt(i) == '-' || value.charAt(i) == '+')) {
+                negativeExponent = value.charAt(i) == '-';
+                i++;
+            }
+            if (i == length) {
+                return Double.parseDouble(value.toString());
+            }
+            int explicitExponent = 0;
+            for (; i < length; i++) {
+                char c = value.charAt(i);
+                if (c < '0' || c > '9') {
+                    return Double.parseDouble(value.toString());
+                }
+                if (explicitExponent < MAX_EXPLICIT_EXPONENT) {
+                    explicitExponent = explicitExponent * 10 + (c - '0');
+                }
+            }
+            exponent += negativeExponent ? -explicitExponent : explicitExponent;
+        }
+        if (i != length) {
+            return Double.parseDouble(value.toString());
+        }
+
+        if (mantissa == 0) {
+            return negative ? -0.0 : 0.0;
+        }
+        if (!truncated && mantissa >= 0 && mantissa <= (1L << 53)
+                && exponent >= -22 && exponent <= 22) {
+            double result = (double) mantissa;
+            result = exponent < 0 ? result / EXACT_POWERS_OF_TEN[-exponent] : result * EXACT_POWERS_OF_TEN[exponent];
+            return negative ? -result : result;
+        }
+
+        long bits = eiselLemire(mantissa, exponent);
+        if (bits >= 0 && truncated && eiselLemire(mantissa + 1, exponent) != bits) {
+            // The dropped digits may change the rounding.
+            bits = -1;
+        }
+        if (bits < 0) {
+            return Double.parseDouble(value.toString());
+        }
+        return Double.longBitsToDouble(negative ? bits | Long.MIN_VALUE : bits);
+    }
+
+    // Returns the bits of the positive double nearest to mantissa * 10^exponent,
+    // or -1 if it is not certain, subnormal or infinite.
+    private static long eiselLemire(long mantissa, int exponent)
+    {
+        if (exponent < MIN_EXPONENT || exponent > MAX_EXPONENT) {
+            return -1;
+        }
+        final int leadingZeros = Long.numberOfLeadingZeros(mantissa);
+        final long normalized = mantissa << leadingZeros;
+        long exponent2 = ((217706 * exponent) >> 16) + 64 + 1023 - leadingZeros;
+
+        final long powerHigh = POWERS_OF_TEN_HIGH[exponent - MIN_EXPONENT];
+        long high = unsignedMultiplyHigh(normalized, powerHigh);
+        long low = normalized * powerHigh;
+        if ((high & 0x1FF) == 0x1FF && Long.compareUnsigned(low + normalized, normalized) < 0) {
+            // The lower 64 bits of the power may carry into the bits that matter.
+            final long powerLow = POWERS_OF_TEN_LOW[exponent - MIN_EXPONENT];
+            long lowHigh = unsignedMultiplyHigh(normalized, powerLow);
+            long lowLow = normalized * powerLow;
+            long mergedHigh = high;
+            long mergedLow = low + lowHigh;
+            if (Long.compareUnsigned(mergedLow, low) < 0) {
+                mergedHigh++;
+            }
+            if ((mergedHigh & 0x1FF) == 0x1FF && mergedLow == -1L
+                    && Long.compareUnsigned(lowLow + normalized, normalized) < 0) {
+                return -1;
+            }
+            high = mergedHigh;
+            low = mergedLow;
+        }
+
+        final long msb = high >>> 63;
+        long result = high >>> (msb + 9);
+        exponent2 -= 1 ^ msb;
+        if (low == 0 && (high & 0x1FF) == 0 && (result & 3) == 1) {
+            // Exactly halfway between two doubles, in which case rounding to even needs all the digits
+            return -1;
+        }
+        result += result & 1;
+        result >>>= 1;
+        if ((result >>> 53) != 0) {
+            result >>>= 1;
+            exponent2++;
+        }
+        if (exponent2 <= 0 || exponent2 >= 0x7FF) {
+            return -1;
+        }
+        return exponent2 << 52 | (result & 0x000FFFFFFFFFFFFFL);
+    }
+
+    // The upper 64 bits of the unsigned 128-bit product, as Math.unsignedMultiplyHigh of Java 18
+    private static long unsignedMultiplyHigh(long x, long y)
+    {
+        final long x0 = x & 0xFFFFFFFFL;
+        final long x1 = x >>> 32;
+        final long y0 = y & 0xFFFFFFFFL;
+        final long y1 = y >>> 32;
+        final long t = x1 * y0 + ((x0 * y0) >>> 32);
+        final long w1 = (t & 0xFFFFFFFFL) + x0 * y1;
+        return x1 * y1 + (t >>> 32) + (w1 >>> 32);
+    }
+}
@@ -3,6 +3,7 @@ package org.embulk.parser.jsonpath.cast;
 import org.embulk.spi.DataException;
 import org.embulk.util.timestamp.TimestampFormatter;
 
+import java.nio.CharBuffer;
 import java.time.Instant;
 import java.time.format.DateTimeParseException;
 import java.util.Arrays;
@@ -29,6 +30,9 @@ public class StringCast
                     "off", "Off", "OFF",
                     "0")));
 
+    private static final String[] TRUE_STRING_ARRAY = TRUE_STRINGS.toArray(new String[0]);
+    private static final String[] FALSE_STRING_ARRAY = FALSE_STRINGS.toArray(new String[0]);
+
     private StringCast() {}
 
     private static String buildErrorMessage(String as, String value)
@@ -50,6 +54,33 @@ public class StringCast
         }
     }
 
+    /**
+     * Same as {@link #asBoolean(String)}, without making a String of the value.
+     */
+    public static boolean asBoolean(CharSequence value)
+            throws DataException
+    {
+        if (matchesAny(TRUE_STRING_ARRAY, value)) {
+            return true;
+        }
+        else if (matchesAny(FALSE_STRING_ARRAY, value)) {
+            return false;
+        }
+        else {
+            throw new DataException(buildErrorMessage("boolean", value.toString()));
+        }
+    }
+
+    /**
+     * Same as {@link #asBoolean(String)} for {@code length} characters of {@code buffer} from {@code offset},
+     * such as the text buffer of a JSON parser.
+     */
+    public static boolean asBoolean(char[] buffer, int offset, int length)
+            throws DataException
+    {
+        return asBoolean(CharBuffer.wrap(buffer, offset, length));
+    }
+
     public static long asLong(String value)
             throws DataException
     {
@@ -61,17 +92,60 @@ public class StringCast
         }
     }
 
+    /**
+     * Same as {@link #asLong(String)}, without making a String of the value.
+     */
+    public static long asLong(CharSequence value)
+            throws DataException
+    {
+        try {
+            return parseLong(value);
+        }
+        catch (NumberFormatException ex) {
+            throw new DataException(buildErrorMessage("long", value.toString()), ex);
+        }
+    }
+
+    /**
+     * Same as {@link #asLong(String)} for {@code length} characters of {@code buffer} from {@code offset},
+     * such as the text buffer of a JSON parser.
+     */
+    public static long asLong(char[] buffer, int offset, int length)
+            throws DataException
+    {
+        return asLong(CharBuffer.wrap(buffer, offset, length));
+    }
+
     public static double asDouble(String value)
             throws DataException
+    {
+        return asDouble((CharSequence) value);
+    }
+
+    /**
+     * Same as {@link #asDouble(String)}, without making a String of the value unless it is unusual.
+     */
+    public static double asDouble(CharSequence value)
+            throws DataException
     {
         try {
-            return Double.parseDouble(value);
+            return FastDoubleParser.parseDouble(value);
         }
         catch (NumberFormatException ex) {
-            throw new DataException(buildErrorMessage("double", value), ex);
+            throw new DataException(buildErrorMessage("double", value.toString()), ex);
         }
     }
 
+    /**
+     * Same as {@link #asDouble(String)} for {@code length} characters of {@code buffer} from {@code offset},
+     * such as the text buffer of a JSON parser.
+     */
+    public static double asDouble(char[] buffer, int offset, int length)
+            throws DataException
+    {
+        return asDouble(CharBuffer.wrap(buffer, offset, length));
+    }
+
     public static String asString(String value)
             throws DataException
     {
@@ -88,4 +162,56 @@ public class StringCast
             throw new DataException(buildErrorMessage("timestamp", value), ex);
         }
     }
+
+    private static boolean matchesAny(String[] candidates, CharSequence value)
+    {
+        for (String candidate : candidates) {
+            if (candidate.contentEquals(value)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    // The algorithm of Long.parseLong(String) with radix 10, including its acceptance of a leading '+'
+    // and of non-ASCII digits, over a CharSequence.
+    private static long parseLong(CharSequence value)
+            throws NumberFormatException
+    {
+        final int length = value.length();
+        if (length == 0) {
+            throw new NumberFormatException("For input string: \"\"");
+        }
+        int i = 0;
+        boolean negative = false;
+        long limit = -Long.MAX_VALUE;
+        char first = value.charAt(0);
+        if (first < '0') {
+            if (first == '-') {
+                negative = true;
+                limit = Long.MIN_VALUE;
+            }
+            else if (first != '+') {
+                throw new NumberFormatException("For input string: \"" + value + "\"");
+            }
+            if (length == 1) {
+                throw new NumberFormatException("For input string: \"" + value + "\"");
+            }
+            i++;
+        }
+        final long multiplyLimit = limit / 10;
+        long result = 0;
+        while (i < length) {
+            int digit = Character.digit(value.charAt(i++), 10);
+            if (digit < 0 || result < multiplyLimit) {
+                throw new NumberFormatException("For input string: \"" + value + "\"");
+            }
+            result *= 10;
+            if (result < limit + digit) {
+                throw new NumberFormatException("For input string: \"" + value + "\"");
+            }
+            result -= digit;
+        }
+        return negative ? result : -result;
+    }
 }
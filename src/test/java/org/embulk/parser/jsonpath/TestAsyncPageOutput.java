@@ -0,0 +1,122 @@
+package org.embulk.parser.jsonpath;
+
+import org.embulk.EmbulkTestRuntime;
+import org.embulk.spi.Page;
+import org.embulk.spi.PageBuilder;
+import org.embulk.spi.PageOutput;
+import org.embulk.spi.Schema;
+import org.embulk.spi.type.Types;
+import org.junit.Rule;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertThrows;
+import static org.junit.Assert.assertTrue;
+
+public class TestAsyncPageOutput
+{
+    @Rule
+    public EmbulkTestRuntime runtime = new EmbulkTestRuntime();
+
+    @Test
+    public void passPagesInOrder()
+    {
+        List<Page> pages = pages(10);
+        RecordingPageOutput output = new RecordingPageOutput(-1);
+        try (AsyncPageOutput async = new AsyncPageOutput(output, 2)) {
+            for (Page page : pages) {
+                async.add(page);
+            }
+            async.finish();
+            assertEquals(pages, output.pages);
+            assertEquals("finish", output.events.get(output.events.size() - 1));
+        }
+        assertEquals("close", output.events.get(output.events.size() - 1));
+    }
+
+    @Test
+    public void throwFailureOfOutput()
+    {
+        List<Page> pages = pages(10);
+        RecordingPageOutput output = new RecordingPageOutput(3);
+        try (AsyncPageOutput async = new AsyncPageOutput(output, 2)) {
+            IllegalStateException e = assertThrows(IllegalStateException.class, () -> {
+                for (Page page : pages) {
+                    async.add(page);
+                }
+                async.finish();
+            });
+            assertSame(output.failure, e);
+        }
+        assertEquals(3, output.pages.size());
+        assertTrue(!output.events.contains("finish"));
+        assertEquals("close", output.events.get(output.events.size() - 1));
+    }
+
+    @Test
+    public void closeWithoutFinish()
+    {
+        RecordingPageOutput output = new RecordingPageOutput(-1);
+        AsyncPageOutput async = new AsyncPageOutput(output, 2);
+        async.add(pages(1).get(0));
+        async.close();
+        async.close();
+        assertEquals(1, output.events.stream().filter("close"::equals).count());
+        assertTrue(!output.events.contains("finish"));
+    }
+
+    private List<Page> pages(int count)
+    {
+        RecordingPageOutput output = new RecordingPageOutput(-1);
+        Schema schema = Schema.builder().add("n", Types.LONG).build();
+        try (PageBuilder pageBuilder = new PageBuilder(runtime.getBufferAllocator(), schema, output)) {
+            for (int i = 0; i < count; i++) {
+                pageBuilder.setLong(0, i);
+                pageBuilder.addRecord();
+                pageBuilder.flush();
+            }
+        }
+        return output.pages;
+    }
+
+    private static class RecordingPageOutput
+            implements PageOutput
+    {
+        private final int failAt;
+        private final IllegalStateException failure = new IllegalStateException("broken output");
+        private final List<Page> pages = new ArrayList<>();
+        private final List<String> events = new ArrayList<>();
+
+        // Fails to add the page at failAt, or never if it is negative
+        RecordingPageOutput(int failAt)
+        {
+            this.failAt = failAt;
+        }
+
+        @Override
+        public synchronized void add(Page page)
+        {
+            if (pages.size() == failAt) {
+                throw failure;
+            }
+            pages.add(page);
+            events.add("add");
+        }
+
+        @Override
+        public synchronized void finish()
+        {
+            events.add("finish");
+        }
+
+        @Override
+        public synchronized void close()
+        {
+            events.add("close");
+        }
+    }
+}
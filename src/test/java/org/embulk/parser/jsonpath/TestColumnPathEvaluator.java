@@ -0,0 +1,208 @@
+package org.embulk.parser.jsonpath;
+
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.jayway.jsonpath.Configuration;
+import com.jayway.jsonpath.JsonPath;
+import com.jayway.jsonpath.spi.json.JacksonJsonNodeJsonProvider;
+import com.jayway.jsonpath.spi.mapper.JacksonMappingProvider;
+import org.junit.Test;
+
+import java.io.IOException;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class TestColumnPathEvaluator
+{
+    private static final Configuration JSON_PATH_CONFIG = Configuration
+            .builder()
+            .mappingProvider(new JacksonMappingProvider())
+            .jsonProvider(new JacksonJsonNodeJsonProvider())
+            .build();
+
+    @Test
+    public void evaluateSharedPrefixes()
+            throws IOException
+    {
+        ColumnPathEvaluator evaluator = new ColumnPathEvaluator(new SimpleJsonPath[] {
+                SimpleJsonPath.parse("$.payload.attributes.a").get(),
+                SimpleJsonPath.parse("$.payload.attributes.b").get(),
+                SimpleJsonPath.parse("$.payload.attributes").get(),
+                SimpleJsonPath.parse("$.payload.items[1]").get(),
+                SimpleJsonPath.ofName("id"),
+                SimpleJsonPath.parse("$.payload.attributes.a").get(),
+        }, new JsonPath[6], JSON_PATH_CONFIG);
+
+        JsonNode json = new ObjectMapper().readTree("{\"id\":1,\"payload\":{\"attributes\":{\"a\":\"x\",\"b\":\"y\"},\"items\":[10,20]}}");
+        JsonNode[] values = new JsonNode[6];
+        evaluator.evaluate(json, values);
+
+        assertEquals("x", values[0].asText());
+        assertEquals("y", values[1].asText());
+        assertEquals(json.get("payload").get("attributes"), values[2]);
+        assertEquals(20, values[3].asInt());
+        assertEquals(1, values[4].asInt());
+        assertEquals("x", values[5].asText());
+    }
+
+    @Test
+    public void evaluateMissingAfterPresent()
+            throws IOException
+    {
+        ColumnPathEvaluator evaluator = new ColumnPathEvaluator(new SimpleJsonPath[] {
+                SimpleJsonPath.parse("$.payload.attributes.a").get(),
+                SimpleJsonPath.parse("$.payload.attributes.b").get(),
+        }, new JsonPath[2], JSON_PATH_CONFIG);
+
+        ObjectMapper mapper = new ObjectMapper();
+        JsonNode[] values = new JsonNode[2];
+        evaluator.evaluate(mapper.readTree("{\"payload\":{\"attributes\":{\"a\":\"x\",\"b\":\"y\"}}}"), values);
+        evaluator.evaluate(mapper.readTree("{\"payload\":{\"attributes\":{\"b\":\"z\"}}}"), values);
+        assertNull(values[0]);
+        assertEquals("z", values[1].asText());
+
+        evaluator.evaluate(mapper.readTree("{\"payload\":null}"), values);
+        assertNull(values[0]);
+        assertNull(values[1]);
+    }
+
+    @Test
+    public void evaluateWithJayway()
+            throws IOException
+    {
+        ColumnPathEvaluator evaluator = new ColumnPathEvaluator(new SimpleJsonPath[] {
+                SimpleJsonPath.ofName("id"),
+                null,
+                null,
+        }, new JsonPath[] {
+                null,
+                JsonPath.compile("$.items[?(@.v > 1)].v"),
+                JsonPath.compile("$.missing[0]"),
+        }, JSON_PATH_CONFIG);
+
+        JsonNode json = new ObjectMapper().readTree("{\"id\":1,\"items\":[{\"v\":1},{\"v\":2}]}");
+        JsonNode[] values = new JsonNode[3];
+        evaluator.evaluate(json, values);
+
+        assertEquals(1, values[0].asInt());
+        assertEquals(1, values[1].size());
+        assertEquals(2, values[1].get(0).asInt());
+        assertNull(values[2]);
+    }
+
+    @Test
+    public void evaluateTokens()
+            throws IOException
+    {
+        ColumnPathEvaluator evaluator = new ColumnPathEvaluator(new SimpleJsonPath[] {
+                SimpleJsonPath.parse("$.payload.attributes.a").get(),
+                SimpleJsonPath.parse("$.payload.attributes").get(),
+                SimpleJsonPath.parse("$.payload.items[1]").get(),
+                SimpleJsonPath.ofName("id"),
+                SimpleJsonPath.ofName("missing"),
+        }, new JsonPath[5], JSON_PATH_CONFIG);
+        assertTrue(evaluator.isStreamable());
+
+        ObjectMapper mapper = new ObjectMapper();
+        String record = "{\"skipped\":{\"x\":[1,{\"y\":2}]},\"id\":12345678901,"
+                + "\"payload\":{\"attributes\":{\"a\":\"x\",\"b\":1.5},\"items\":[10,[20],30]},"
+                + "\"id\":2}";
+        JsonNode[] expected = new JsonNode[5];
+        evaluator.evaluate(mapper.readTree(record), expected);
+
+        JsonParser parser = mapper.getFactory().createParser("[" + record + ",\"next\"]");
+        parser.nextToken();
+        parser.nextToken();
+        JsonNode[] values = new JsonNode[5];
+        evaluator.evaluate(parser, values);
+
+        for (int i = 0; i < values.length; i++) {
+            assertEquals(expected[i], values[i]);
+        }
+        assertEquals(2, values[3].asInt());  // the later duplicate wins
+        assertEquals(mapper.readTree("[20]"), values[2]);
+        assertNull(values[4]);
+        assertEquals(JsonToken.VALUE_STRING, parser.nextToken());
+        assertEquals("next", parser.getText());
+    }
+
+    @Test
+    public void evaluateTokensOfReplacedDuplicate()
+            throws IOException
+    {
+        ColumnPathEvaluator evaluator = new ColumnPathEvaluator(new SimpleJsonPath[] {
+                SimpleJsonPath.parse("$.a.x").get(),
+                SimpleJsonPath.parse("$.a.y").get(),
+        }, new JsonPath[2], JSON_PATH_CONFIG);
+
+        JsonParser parser = new ObjectMapper().getFactory().createParser("{\"a\":{\"x\":1},\"a\":{\"y\":2}}");
+        parser.nextToken();
+        JsonNode[] values = new JsonNode[2];
+        evaluator.evaluate(parser, values);
+        assertNull(values[0]);
+        assertEquals(2, values[1].asInt());
+    }
+
+    @Test
+    public void evaluateTokensIntoTokenValues()
+            throws IOException
+    {
+        ColumnPathEvaluator evaluator = new ColumnPathEvaluator(new SimpleJsonPath[] {
+                SimpleJsonPath.ofName("s"),
+                SimpleJsonPath.ofName("l"),
+                SimpleJsonPath.ofName("d"),
+                SimpleJsonPath.ofName("big"),
+                SimpleJsonPath.ofName("o"),
+                SimpleJsonPath.ofName("s"),
+        }, new JsonPath[6], JSON_PATH_CONFIG);
+
+        ObjectMapper mapper = new ObjectMapper();
+        JsonParser parser = mapper.getFactory().createParser(
+                "{\"s\":\"x\",\"l\":-12,\"d\":1.5,\"big\":12345678901234567890,\"o\":{\"a\":1}} {\"l\":true,\"d\":\"\\u00e9t\u00e9\"}");
+        JsonNode[] values = new JsonNode[6];
+        TokenValue[] tokens = new TokenValue[] {new TokenValue(), new TokenValue(), new TokenValue(), new TokenValue(), new TokenValue(), null};
+        parser.nextToken();
+        evaluator.evaluate(parser, values, tokens);
+
+        // The string is also read by column 5, which takes no TokenValue, so it is built for both.
+        assertFalse(tokens[0].isPresent());
+        assertEquals("x", values[0].asText());
+        assertEquals("x", values[5].asText());
+        assertTrue(tokens[1].isLong());
+        assertEquals(-12L, tokens[1].getLongValue());
+        assertNull(values[1]);
+        assertTrue(tokens[2].isPresent());
+        assertFalse(tokens[2].isText() || tokens[2].isLong());
+        assertEquals(1.5, tokens[2].getDoubleValue(), 0.0);
+        assertFalse(tokens[3].isPresent());
+        assertEquals("12345678901234567890", values[3].asText());
+        assertFalse(tokens[4].isPresent());
+        assertEquals(mapper.readTree("{\"a\":1}"), values[4]);
+
+        parser.nextToken();
+        evaluator.evaluate(parser, values, tokens);
+        for (int i : new int[] {0, 1, 3, 4}) {
+            assertFalse(tokens[i].isPresent());
+        }
+        assertTrue(values[1].asBoolean());
+        assertTrue(tokens[2].isText());
+        assertEquals(3, tokens[2].getTextLength());
+        assertEquals("\u00e9t\u00e9", new String(tokens[2].getTextCharacters(), 0, 3));
+        assertEquals("\u00e9t\u00e9", tokens[2].getText());
+        assertNull(values[2]);
+    }
+
+    @Test
+    public void notStreamable()
+    {
+        assertFalse(new ColumnPathEvaluator(new SimpleJsonPath[] {SimpleJsonPath.parse("$.items[-1]").get()},
+                new JsonPath[1], JSON_PATH_CONFIG).isStreamable());
+        assertFalse(new ColumnPathEvaluator(new SimpleJsonPath[] {null},
+                new JsonPath[] {JsonPath.compile("$..a")}, JSON_PATH_CONFIG).isStreamable());
+    }
+}
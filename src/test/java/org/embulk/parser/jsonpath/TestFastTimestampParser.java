@@ -0,0 +1,138 @@
+package org.embulk.parser.jsonpath;
+
+import org.embulk.spi.DataException;
+import org.embulk.util.timestamp.TimestampFormatter;
+import org.junit.Test;
+
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.ZonedDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertThrows;
+import static org.junit.Assert.assertTrue;
+
+public class TestFastTimestampParser
+{
+    private static final TimestampColumnParser UNUSED = value -> {
+        throw new AssertionError("Unexpected fallback: " + value);
+    };
+
+    @Test
+    public void recognizePatterns()
+    {
+        assertTrue(FastTimestampParser.of("%Y-%m-%dT%H:%M:%S%z", "UTC", UNUSED).isPresent());
+        assertTrue(FastTimestampParser.of("%Y-%m-%dT%H:%M:%S.%N%:z", "UTC", UNUSED).isPresent());
+        assertTrue(FastTimestampParser.of("%Y-%m-%d %H:%M:%S.%N %z", "UTC", UNUSED).isPresent());
+        assertTrue(FastTimestampParser.of("%Y-%m-%d %H:%M:%S", "Asia/Tokyo", UNUSED).isPresent());
+        assertTrue(FastTimestampParser.of("%F %T", "+09:00", UNUSED).isPresent());
+        assertTrue(FastTimestampParser.of("%Y/%m/%d", "UTC", UNUSED).isPresent());
+        assertTrue(FastTimestampParser.of("%Y%m%d%H%M%S", "UTC", UNUSED).isPresent());
+
+        assertFalse(FastTimestampParser.of("%d/%b/%Y:%H:%M:%S %z", "UTC", UNUSED).isPresent());
+        assertFalse(FastTimestampParser.of("%H:%M:%S", "UTC", UNUSED).isPresent());
+        assertFalse(FastTimestampParser.of("%Y-%m-%d %H:%M", "UTC", UNUSED).isPresent());
+        assertFalse(FastTimestampParser.of("%s", "UTC", UNUSED).isPresent());
+        assertFalse(FastTimestampParser.of("%Y-%m-%d %H:%M:%S %Z", "UTC", UNUSED).isPresent());
+        assertFalse(FastTimestampParser.of("%Y-%m-%d", "JST", UNUSED).isPresent());
+    }
+
+    @Test
+    public void parseCanonicalValues()
+    {
+        FastTimestampParser parser = FastTimestampParser.of("%Y-%m-%dT%H:%M:%S.%N%z", "UTC", UNUSED).get();
+        assertEquals(Instant.ofEpochSecond(1451606400L, 123456000), parser.parse("2016-01-01T00:00:00.123456Z"));
+        assertEquals(Instant.ofEpochSecond(1451606400L, 100000000), parser.parse("2016-01-01T09:00:00.1+09:00"));
+        assertEquals(Instant.ofEpochSecond(1451606400L, 1), parser.parse("2015-12-31T19:00:00.000000001-0500"));
+
+        FastTimestampParser local = FastTimestampParser.of("%Y-%m-%d %H:%M:%S", "Asia/Tokyo", UNUSED).get();
+        assertEquals(Instant.ofEpochSecond(1451606400L), local.parse("2016-01-01 09:00:00"));
+    }
+
+    @Test
+    public void leaveOtherFormsToFallback()
+    {
+        FastTimestampParser parser = FastTimestampParser.of("%Y-%m-%dT%H:%M:%S%z", "UTC", UNUSED).get();
+        assertNull(parser.parseCanonical("2016-1-01T00:00:00Z"));
+        assertNull(parser.parseCanonical("2016-01-01T00:00:00 Z"));
+        assertNull(parser.parseCanonical("2016-01-01T00:00:00UTC"));
+        assertNull(parser.parseCanonical("2016-01-01T00:00:00+09"));
+        assertNull(parser.parseCanonical("2016-01-01T00:00:60Z"));
+        assertNull(parser.parseCanonical("2015-02-29T00:00:00Z"));
+        assertNull(parser.parseCanonical("2016-01-01T00:00:00Z "));
+        assertNull(parser.parseCanonical("2016-01-01T00:00"));
+
+        FastTimestampParser local = FastTimestampParser.of("%Y-%m-%d %H:%M:%S", "America/New_York", UNUSED).get();
+        assertNull(local.parseCanonical("2016-03-13 02:30:00"));  // in the gap
+        assertNull(local.parseCanonical("2016-11-06 01:30:00"));  // in the overlap
+    }
+
+    @Test
+    public void matchTimestampFormatter()
+    {
+        String[][] patterns = {
+            {"%Y-%m-%dT%H:%M:%S%z", "UTC"},
+            {"%Y-%m-%dT%H:%M:%S.%N%:z", "UTC"},
+            {"%Y-%m-%d %H:%M:%S.%N %z", "UTC"},
+            {"%Y-%m-%d %H:%M:%S", "UTC"},
+            {"%Y-%m-%d %H:%M:%S", "Asia/Tokyo"},
+            {"%Y-%m-%d %H:%M:%S", "America/New_York"},
+            {"%Y-%m-%dT%H:%M:%S.%L", "-03:30"},
+            {"%Y%m%d%H%M%S", "Europe/Berlin"},
+            {"%Y-%m-%d", "Asia/Tokyo"},
+        };
+        Random random = new Random(42);
+        for (String[] pattern : patterns) {
+            TimestampColumnParser formatter = formatter(pattern[0], pattern[1]);
+            FastTimestampParser parser = FastTimestampParser.of(pattern[0], pattern[1], formatter).get();
+            for (int i = 0; i < 2000; i++) {
+                String value = format(random, pattern[0], ZoneId.of(pattern[1]));
+                assertEquals(value, formatter.parse(value), parser.parse(value));
+            }
+        }
+    }
+
+    @Test
+    public void fallBackToTimestampFormatter()
+    {
+        TimestampColumnParser formatter = formatter("%Y-%m-%d %H:%M:%S %z", "UTC");
+        FastTimestampParser parser = FastTimestampParser.of("%Y-%m-%d %H:%M:%S %z", "UTC", formatter).get();
+
+        for (String value : new String[] {"2016-1-1 0:00:00 +0000", "2016-01-01 00:00:00 UTC", "2016-01-01 00:00:00 +09"}) {
+            assertNull(parser.parseCanonical(value));
+            assertEquals(value, formatter.parse(value), parser.parse(value));
+        }
+        assertThrows(DataException.class, () -> parser.parse("2016-02-30 00:00:00 +0000"));
+        assertThrows(DataException.class, () -> parser.parse("INVALID"));
+    }
+
+    @SuppressWarnings("deprecation")
+    private static TimestampColumnParser formatter(String pattern, String zoneId)
+    {
+        return TimestampColumnParser.of(TimestampFormatter.builder(pattern, true)
+                .setDefaultZoneFromString(zoneId)
+                .setDefaultDateFromString("1970-01-01")
+                .build());
+    }
+
+    // Formats a random instant in the canonical form of the pattern.
+    private static String format(Random random, String pattern, ZoneId zone)
+    {
+        long epochSecond = (long) (random.nextDouble() * 4102444800L) - 946684800L;  // 1940 - 2100
+        ZonedDateTime time = Instant.ofEpochSecond(epochSecond, random.nextInt(1000000000)).atZone(zone);
+        if (random.nextBoolean()) {
+            time = time.withNano(time.getNano() / 1000 * 1000);
+        }
+        String javaPattern = pattern
+                .replace("%Y", "yyyy").replace("%m", "MM").replace("%d", "dd")
+                .replace("%H", "HH").replace("%M", "mm").replace("%S", "ss")
+                .replace("%N", "SSSSSSSSS").replace("%L", "SSS")
+                .replace("%:z", "xxx").replace("%z", "xx")
+                .replace("T", "'T'");
+        return time.format(DateTimeFormatter.ofPattern(javaPattern));
+    }
+}
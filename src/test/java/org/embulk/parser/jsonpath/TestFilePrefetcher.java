@@ -0,0 +1,163 @@
+package org.embulk.parser.jsonpath;
+
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.google.common.collect.ImmutableList;
+import org.embulk.EmbulkTestRuntime;
+import org.embulk.parser.jsonpath.ParserMetrics.SkipReason;
+import org.embulk.spi.DataException;
+import org.embulk.spi.FileInput;
+import org.embulk.spi.util.InputStreamFileInput;
+import org.junit.Rule;
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertThrows;
+import static org.junit.Assert.assertTrue;
+
+public class TestFilePrefetcher
+{
+    private static final ObjectMapper OBJECT_MAPPER = new ObjectMapper();
+
+    @Rule
+    public EmbulkTestRuntime runtime = new EmbulkTestRuntime();
+
+    @Test
+    public void keepOrderOfFilesAndRecords()
+    {
+        FileInput input = fileInput("{\"n\":1}\n{\"n\":2}\n", "", "{\"n\":3}\n{\"n\":4}\n{\"n\":5}\n");
+        InvalidRecordHandler invalidRecords = new InvalidRecordHandler(false, new ParserMetrics(), Optional.empty());
+        List<String> records = new ArrayList<>();
+        List<Long> bytes = new ArrayList<>();
+        // Smaller than a batch, so that the helper thread waits for every batch to be taken
+        try (FilePrefetcher prefetcher = new FilePrefetcher(input, 1, TestFilePrefetcher::parseDocuments, invalidRecords)) {
+            Optional<FilePrefetcher.PrefetchedFile> file;
+            for (int fileIndex = 0; (file = prefetcher.nextFile()).isPresent(); fileIndex++) {
+                assertEquals(fileIndex, file.get().getIndex());
+                file.get().emit(record -> records.add(record.toString()));
+                bytes.add(file.get().getBytes());
+            }
+        }
+        assertEquals("[{\"n\":1}, {\"n\":2}, {\"n\":3}, {\"n\":4}, {\"n\":5}]", records.toString());
+        assertEquals("[16, 0, 24]", bytes.toString());
+    }
+
+    @Test
+    public void passSkipsInOrder()
+    {
+        FileInput input = fileInput("{\"n\":1}\n\"skip\"\n{\"n\":2}\n");
+        ParserMetrics metrics = new ParserMetrics();
+        InvalidRecordHandler invalidRecords = new InvalidRecordHandler(true, metrics, Optional.empty());
+        List<String> records = new ArrayList<>();
+        try (FilePrefetcher prefetcher = new FilePrefetcher(input, 1024, TestFilePrefetcher::parseDocuments, invalidRecords)) {
+            FilePrefetcher.PrefetchedFile file = prefetcher.nextFile().get();
+            assertThrows(DataException.class, () -> file.emit(record -> records.add(record.toString())));
+        }
+        assertEquals("[{\"n\":1}]", records.toString());
+    }
+
+    @Test
+    public void rethrowFailureOfHelperThread()
+    {
+        FileInput input = fileInput("{\"n\":1}\n", "{\"n\":2}\n");
+        InvalidRecordHandler invalidRecords = new InvalidRecordHandler(false, new ParserMetrics(), Optional.empty());
+        List<String> records = new ArrayList<>();
+        FilePrefetcher.FileParser parser = (file, emitter, fileInvalidRecords) -> {
+            if (fileInvalidRecords.getFileIndex() == 1) {
+                throw new IllegalStateException("broken");
+            }
+            parseDocuments(file, emitter, fileInvalidRecords);
+        };
+        try (FilePrefetcher prefetcher = new FilePrefetcher(input, 1024, parser, invalidRecords)) {
+            prefetcher.nextFile().get().emit(record -> records.add(record.toString()));
+            FilePrefetcher.PrefetchedFile file = prefetcher.nextFile().get();
+            IllegalStateException e = assertThrows(IllegalStateException.class, () -> file.emit(record -> records.add(record.toString())));
+            assertEquals("broken", e.getMessage());
+        }
+        assertEquals("[{\"n\":1}]", records.toString());
+    }
+
+    @Test
+    public void boundQueueOfSkips()
+            throws Exception
+    {
+        InvalidRecordHandler invalidRecords = new InvalidRecordHandler(false, new ParserMetrics(), Optional.empty());
+        AtomicInteger skips = new AtomicInteger();
+        FilePrefetcher.FileParser parser = (file, emitter, fileInvalidRecords) -> {
+            for (int i = 0; i < 100; i++) {
+                skips.incrementAndGet();
+                fileInvalidRecords.skipOrThrow(new DataException("invalid"), SkipReason.INVALID_JSON);
+            }
+        };
+        // Room for a few skips, so that the helper thread waits though skips have no JSON
+        try (FilePrefetcher prefetcher = new FilePrefetcher(fileInput("x"), FilePrefetcher.SKIP_BYTES * 3, parser, invalidRecords)) {
+            FilePrefetcher.PrefetchedFile file = prefetcher.nextFile().get();
+            Thread.sleep(100);
+            assertTrue(skips.get() <= 4);
+            file.emit(record -> { });
+        }
+        assertEquals(100, skips.get());
+    }
+
+    @Test
+    public void estimateHeapBytesOfTrees()
+            throws Exception
+    {
+        long small = FilePrefetcher.estimateHeapBytes(OBJECT_MAPPER.readTree("{\"a\":1}"));
+        long large = FilePrefetcher.estimateHeapBytes(OBJECT_MAPPER.readTree("{\"a\":1,\"b\":[\"x\",\"yz\",null,true,2.5]}"));
+        // A tree takes more heap than its JSON
+        assertTrue(small > "{\"a\":1}".length());
+        assertTrue(large > small);
+        assertEquals(0, FilePrefetcher.estimateHeapBytes(OBJECT_MAPPER.readTree("null")));
+    }
+
+    @Test
+    public void noFiles()
+    {
+        InvalidRecordHandler invalidRecords = new InvalidRecordHandler(false, new ParserMetrics(), Optional.empty());
+        try (FilePrefetcher prefetcher = new FilePrefetcher(fileInput(), 1024, TestFilePrefetcher::parseDocuments, invalidRecords)) {
+            assertFalse(prefetcher.nextFile().isPresent());
+        }
+    }
+
+    // Emits the objects of a file of JSON Lines, and skips the other values.
+    private static void parseDocuments(InputStream file, Consumer<JsonNode> emitter, InvalidRecordHandler invalidRecords)
+    {
+        try (JsonParser parser = OBJECT_MAPPER.getFactory().createParser(file)) {
+            while (parser.nextToken() != null) {
+                JsonNode document = OBJECT_MAPPER.readTree(parser);
+                if (document.isObject()) {
+                    emitter.accept(document);
+                }
+                else {
+                    invalidRecords.skipOrThrow(new DataException("not an object"), SkipReason.INVALID_RECORD);
+                }
+            }
+        }
+        catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private FileInput fileInput(String... files)
+    {
+        InputStream[] ins = new InputStream[files.length];
+        for (int i = 0; i < files.length; i++) {
+            ins[i] = new ByteArrayInputStream(files[i].getBytes(StandardCharsets.UTF_8));
+        }
+        return new InputStreamFileInput(runtime.getBufferAllocator(), new InputStreamFileInput.IteratorProvider(ImmutableList.copyOf(ins)));
+    }
+}
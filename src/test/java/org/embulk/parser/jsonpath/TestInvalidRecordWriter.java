@@ -0,0 +1,79 @@
+package org.embulk.parser.jsonpath;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.embulk.parser.jsonpath.ParserMetrics.SkipReason;
+import org.embulk.spi.Column;
+import org.embulk.spi.DataException;
+import org.embulk.spi.type.Types;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.nio.charset.StandardCharsets;
+import java.nio.file.FileAlreadyExistsException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Collections;
+import java.util.List;
+import java.util.Optional;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertThrows;
+
+public class TestInvalidRecordWriter
+{
+    private static final ObjectMapper OBJECT_MAPPER = new ObjectMapper();
+
+    @Rule
+    public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    @Test
+    public void writeRecords()
+            throws Exception
+    {
+        Path path = temporaryFolder.newFolder().toPath().resolve("invalid.jsonl");
+        try (InvalidRecordWriter writer = InvalidRecordWriter.open(path)) {
+            writer.write(InvalidRecord.ofValue(0, OBJECT_MAPPER.readTree("{\"_c0\":\"x\"}"), Optional.of(new Column(0, "_c0", Types.LONG))),
+                    SkipReason.INVALID_RECORD, new DataException("cannot cast String to long: \"x\""));
+            writer.write(InvalidRecord.ofRange(1, 10, 25, Optional.empty()),
+                    SkipReason.INVALID_JSON, new DataException("Unexpected end-of-input"));
+            writer.write(InvalidRecord.ofFile(2),
+                    SkipReason.ROOT_NOT_FOUND, new DataException("Failed to get root json path='$.records'"));
+        }
+
+        List<String> lines = Files.readAllLines(path, StandardCharsets.UTF_8);
+        assertEquals(3, lines.size());
+        assertEquals(OBJECT_MAPPER.readTree("{\"file\":0,\"reason\":\"invalid_record\",\"column\":\"_c0\","
+                + "\"error\":\"cannot cast String to long: \\\"x\\\"\",\"record\":{\"_c0\":\"x\"}}"), OBJECT_MAPPER.readTree(lines.get(0)));
+        assertEquals(OBJECT_MAPPER.readTree("{\"file\":1,\"reason\":\"invalid_json\",\"column\":null,"
+                + "\"error\":\"Unexpected end-of-input\",\"range\":[10,25]}"), OBJECT_MAPPER.readTree(lines.get(1)));
+        assertEquals(OBJECT_MAPPER.readTree("{\"file\":2,\"reason\":\"root_not_found\",\"column\":null,"
+                + "\"error\":\"Failed to get root json path='$.records'\",\"range\":[-1,-1]}"), OBJECT_MAPPER.readTree(lines.get(2)));
+    }
+
+    @Test
+    public void keepExistingFile()
+            throws Exception
+    {
+        Path path = temporaryFolder.newFolder().toPath().resolve("invalid.jsonl");
+        Files.write(path, "{\"file\":0}\n".getBytes(StandardCharsets.UTF_8));
+        assertThrows(FileAlreadyExistsException.class, () -> InvalidRecordWriter.open(path));
+        assertEquals(Collections.singletonList("{\"file\":0}"), Files.readAllLines(path, StandardCharsets.UTF_8));
+    }
+
+    @Test
+    public void waitForQueuedRecords()
+            throws Exception
+    {
+        Path path = temporaryFolder.newFolder().toPath().resolve("invalid.jsonl");
+        try (InvalidRecordWriter writer = InvalidRecordWriter.open(path)) {
+            for (int i = 0; i < 10000; i++) {
+                writer.write(InvalidRecord.ofFile(i), SkipReason.INVALID_RECORD, new DataException("invalid"));
+            }
+        }
+
+        List<String> lines = Files.readAllLines(path, StandardCharsets.UTF_8);
+        assertEquals(10000, lines.size());
+        assertEquals(9999, OBJECT_MAPPER.readTree(lines.get(9999)).get("file").asInt());
+    }
+}
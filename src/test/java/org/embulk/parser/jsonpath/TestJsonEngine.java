@@ -0,0 +1,151 @@
+package org.embulk.parser.jsonpath;
+
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.dataformat.cbor.CBORFactory;
+import com.fasterxml.jackson.dataformat.smile.SmileFactory;
+import org.embulk.parser.jsonpath.JsonpathParserPlugin.Format;
+import org.embulk.parser.jsonpath.JsonpathParserPlugin.JsonEngineType;
+import org.embulk.parser.jsonpath.ParserMetrics.SkipReason;
+import org.embulk.spi.DataException;
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertThrows;
+
+/**
+ * Conformance of every {@link JsonEngine}: each case is run against all the engines, which must give the same results.
+ */
+public class TestJsonEngine
+{
+    private static final ObjectMapper OBJECT_MAPPER = new ObjectMapper();
+
+    @Test
+    public void readRootArray()
+    {
+        assertConformance("[{\"a\":1}, {\"a\":2}]", "$", Format.JSON, "[{\"a\":1},{\"a\":2}]");
+        assertConformance("[{\"a\":1}, {\"a\":2}]", "$.records", Format.JSON, "{\"x\":[0],\"records\":[{\"a\":1},{\"a\":2}],\"y\":{}}");
+        assertConformance("[{\"a\":1}, {\"a\":2}]", "$.records[*]", Format.JSON, "{\"records\":[{\"a\":1},{\"a\":2}]}");
+        assertConformance("[{\"a\":2}]", "$.records[1]", Format.JSON, "{\"records\":[[{\"a\":1}],[{\"a\":2}]]}");
+        assertConformance("[]", "$", Format.JSON, "[]");
+    }
+
+    @Test
+    public void readSingleRecord()
+    {
+        assertConformance("[{\"a\":1}]", "$.record", Format.JSON, "{\"record\":{\"a\":1}}");
+        assertConformance("[1]", "$.records[0].a", Format.JSON, "{\"records\":[{\"a\":1}]}");
+    }
+
+    @Test
+    public void readDocuments()
+    {
+        String lines = "{\"records\":[{\"a\":1},{\"a\":2}]}\n{\"records\":[]}\n{\"records\":[{\"a\":3}]}\n";
+        assertConformance("[{\"a\":1}, {\"a\":2}, {\"a\":3}]", "$.records", Format.JSONL, lines);
+        assertConformance("[{\"a\":1}, {\"a\":2}, {\"a\":3}]", "$.records", Format.CONCATENATED, lines.replace("\n", ""));
+        assertConformance("[{\"a\":1}, {\"a\":2}]", "$", Format.JSONL, "{\"a\":1}\n{\"a\":2}\n");
+    }
+
+    @Test
+    public void readBinaryDocuments()
+    {
+        String documents = "{\"records\":[{\"a\":1},{\"a\":2.5}]}{\"records\":[]}{\"other\":1}{\"records\":{\"a\":\"x\"}}";
+        for (Format format : new Format[] {Format.SMILE, Format.CBOR}) {
+            assertConformance("[{\"a\":1}, {\"a\":2.5}, skipped ROOT_NOT_FOUND, {\"a\":\"x\"}]", "$.records", format, documents);
+        }
+    }
+
+    @Test
+    public void skipDocumentsWithoutRoot()
+    {
+        assertConformance("[skipped ROOT_NOT_FOUND]", "$.records", Format.JSON, "{\"other\":[{\"a\":1}]}");
+        assertConformance("[{\"a\":1}, skipped ROOT_NOT_FOUND, {\"a\":3}]", "$.records", Format.JSONL,
+                "{\"records\":[{\"a\":1}]}\n{\"other\":[{\"a\":2}]}\n{\"records\":[{\"a\":3}]}\n");
+    }
+
+    @Test
+    public void skipInvalidJson()
+    {
+        assertConformance("[skipped INVALID_JSON]", "$.records", Format.JSON, "{\"x\" 1, \"records\":[{\"a\":1}]}");
+        assertConformance("[{\"a\":1}, skipped INVALID_JSON]", "$.records", Format.JSONL,
+                "{\"records\":[{\"a\":1}]}\n{\"x\" 1, \"records\":[{\"a\":2}]}\n");
+    }
+
+    @Test
+    public void skipInvalidJsonLines()
+    {
+        assertConformance("[{\"a\":1}, skipped INVALID_JSON, {\"a\":3}, skipped INVALID_JSON, {\"a\":5}]", "$.records", Format.JSONL,
+                "{\"records\":[{\"a\":1}]}\n{\"x\" 1, \"records\":[{\"a\":2}]}\n{\"records\":[{\"a\":3}]}\ngarbage\n{\"records\":[{\"a\":5}]}\n");
+        assertConformance("[{\"a\":1}, skipped INVALID_JSON, {\"a\":3}, skipped INVALID_JSON]", "$", Format.JSONL,
+                "{\"a\":1}\n{\"a\":2\n{\"a\":3}\n{\"a\":");
+    }
+
+    @Test
+    public void stopOnInvalidJson()
+    {
+        for (JsonEngineType type : JsonEngineType.values()) {
+            JsonEngine engine = JsonpathParserPlugin.newJsonEngine(type, "$.records", Format.JSON);
+            ParserMetrics metrics = new ParserMetrics();
+            InvalidRecordHandler invalidRecords = new InvalidRecordHandler(true, metrics, Optional.empty());
+            assertThrows(DataException.class, () -> engine.parseFile(inputStream("{\"x\" 1}"), record -> { },
+                    JsonpathParserPlugin.treeRecordReader(record -> { }, metrics), metrics, invalidRecords));
+        }
+    }
+
+    private static void assertConformance(String expected, String root, Format format, String json)
+    {
+        for (JsonEngineType type : JsonEngineType.values()) {
+            assertEquals(type + " " + root + " " + json, expected, parse(type, root, format, json));
+        }
+    }
+
+    private static String parse(JsonEngineType type, String root, Format format, String json)
+    {
+        JsonEngine engine = JsonpathParserPlugin.newJsonEngine(type, root, format);
+        List<String> results = new ArrayList<>();
+        ParserMetrics metrics = new ParserMetrics();
+        InvalidRecordHandler invalidRecords = new InvalidRecordHandler(false, metrics, Optional.empty()) {
+            @Override
+            public void skipOrThrow(DataException cause, SkipReason reason, InvalidRecord record)
+            {
+                results.add("skipped " + reason);
+            }
+        };
+        engine.parseFile(new ByteArrayInputStream(encode(format, json)), record -> results.add(record.toString()),
+                JsonpathParserPlugin.treeRecordReader(record -> results.add(record.toString()), metrics), metrics, invalidRecords);
+        return results.toString();
+    }
+
+    // Documents of a binary format are given as text, and encoded one by one.
+    private static byte[] encode(Format format, String json)
+    {
+        if (format.isText()) {
+            return json.getBytes(StandardCharsets.UTF_8);
+        }
+        ObjectMapper mapper = new ObjectMapper(format == Format.SMILE ? new SmileFactory() : new CBORFactory());
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        try (JsonParser parser = OBJECT_MAPPER.getFactory().createParser(json)) {
+            while (parser.nextToken() != null) {
+                out.write(mapper.writeValueAsBytes(OBJECT_MAPPER.readTree(parser)));
+            }
+        }
+        catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return out.toByteArray();
+    }
+
+    private static ByteArrayInputStream inputStream(String json)
+    {
+        return new ByteArrayInputStream(json.getBytes(StandardCharsets.UTF_8));
+    }
+}
@@ -0,0 +1,68 @@
+package org.embulk.parser.jsonpath;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.BinaryNode;
+import org.embulk.util.json.JsonParser;
+import org.junit.Test;
+import org.msgpack.value.Value;
+
+import java.io.IOException;
+import java.math.BigInteger;
+
+import static org.junit.Assert.assertEquals;
+import static org.msgpack.value.ValueFactory.newArray;
+import static org.msgpack.value.ValueFactory.newBoolean;
+import static org.msgpack.value.ValueFactory.newFloat;
+import static org.msgpack.value.ValueFactory.newInteger;
+import static org.msgpack.value.ValueFactory.newMap;
+import static org.msgpack.value.ValueFactory.newNil;
+import static org.msgpack.value.ValueFactory.newString;
+
+public class TestJsonNodeValueConverter
+{
+    private final ObjectMapper mapper = new ObjectMapper();
+
+    @Test
+    public void convertScalars()
+            throws IOException
+    {
+        assertEquals(newNil(), convert("null"));
+        assertEquals(newBoolean(true), convert("true"));
+        assertEquals(newInteger(-10), convert("-10"));
+        assertEquals(newInteger(Long.MAX_VALUE), convert(String.valueOf(Long.MAX_VALUE)));
+        assertEquals(newInteger(new BigInteger("123456789012345678901234567890")), convert("123456789012345678901234567890"));
+        assertEquals(newFloat(0.1), convert("0.1"));
+        assertEquals(newFloat(1e300), convert("1e300"));
+        assertEquals(newString("エンバルク"), convert("\"エンバルク\""));
+    }
+
+    @Test
+    public void convertContainers()
+            throws IOException
+    {
+        assertEquals(newMap(newString("k"), newString("v")), convert("{\"k\":\"v\"}"));
+        assertEquals(newArray(newString("e0"), newString("e1")), convert("[\"e0\",\"e1\"]"));
+        assertEquals(newArray(), convert("[]"));
+        assertEquals(newMap(), convert("{}"));
+    }
+
+    @Test
+    public void convertBinaryToBase64()
+    {
+        assertEquals(newString("AAEC/w=="), JsonNodeValueConverter.toValue(BinaryNode.valueOf(new byte[] {0, 1, 2, -1})));
+    }
+
+    @Test
+    public void sameAsJsonParser()
+            throws IOException
+    {
+        String json = "{\"a\":[1,2.5,{\"b\":null,\"c\":[true,false]}],\"d\":{\"e\":\"f\\\"g\",\"h\":-0.0},\"i\":18446744073709551616}";
+        assertEquals(new JsonParser().parse(json), convert(json));
+    }
+
+    private Value convert(String json)
+            throws IOException
+    {
+        return JsonNodeValueConverter.toValue(mapper.readTree(json));
+    }
+}
@@ -0,0 +1,54 @@
+package org.embulk.parser.jsonpath;
+
+import com.fasterxml.jackson.databind.node.JsonNodeFactory;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+public class TestJsonRecordValidateException
+{
+    @Test
+    public void formatMessageWhenUsed()
+    {
+        ObjectNode record = JsonNodeFactory.instance.objectNode();
+        JsonRecordValidateException e = JsonRecordValidateException.of("invalid json='%s'", record);
+        record.put("k", "v");
+
+        assertEquals("invalid json='{\"k\":\"v\"}'", e.getMessage());
+        assertEquals(e.getMessage(), e.getMessage());
+        assertEquals(JsonRecordValidateException.class.getName() + ": invalid json='{\"k\":\"v\"}'", e.toString());
+    }
+
+    @Test
+    public void abbreviateLongValues()
+    {
+        StringBuilder value = new StringBuilder();
+        for (int i = 0; i < 1000; i++) {
+            value.append('x');
+        }
+        String message = JsonRecordValidateException.of("[%s]", value).getMessage();
+
+        assertEquals(1 + JsonRecordValidateException.MAX_VALUE_LENGTH + "...(1000 characters)".length() + 1, message.length());
+        assertTrue(message.endsWith("xxx...(1000 characters)]"));
+    }
+
+    @Test
+    public void keepCause()
+    {
+        IllegalArgumentException cause = new IllegalArgumentException("broken");
+        JsonRecordValidateException e = JsonRecordValidateException.of(cause, "failed to get \"%s\" as Json", "x");
+
+        assertSame(cause, e.getCause());
+        assertEquals("failed to get \"x\" as Json", e.getMessage());
+    }
+
+    @Test
+    public void haveNoStackTrace()
+    {
+        assertEquals(0, JsonRecordValidateException.of("invalid").getStackTrace().length);
+        assertEquals(0, new JsonRecordValidateException("invalid").getStackTrace().length);
+    }
+}
@@ -1,8 +1,15 @@
 package org.embulk.parser.jsonpath;
 
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import com.fasterxml.jackson.dataformat.cbor.CBORFactory;
+import com.fasterxml.jackson.dataformat.smile.SmileFactory;
 import com.google.common.collect.ImmutableList;
 import com.google.common.collect.Lists;
 import org.embulk.EmbulkTestRuntime;
+import org.embulk.config.ConfigException;
 import org.embulk.config.ConfigLoader;
 import org.embulk.config.ConfigSource;
 import org.embulk.config.TaskSource;
@@ -21,21 +28,29 @@ import org.embulk.util.config.units.SchemaConfig;
 import org.junit.Before;
 import org.junit.Rule;
 import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
 
 import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
 import java.io.File;
 import java.io.IOException;
 import java.io.InputStream;
+import java.lang.management.ManagementFactory;
 import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.List;
 
+import javax.management.ObjectName;
+
 import static org.embulk.spi.type.Types.BOOLEAN;
 import static org.embulk.spi.type.Types.DOUBLE;
 import static org.embulk.spi.type.Types.JSON;
 import static org.embulk.spi.type.Types.LONG;
 import static org.embulk.spi.type.Types.STRING;
 import static org.embulk.spi.type.Types.TIMESTAMP;
+import static org.junit.Assert.assertArrayEquals;
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertNull;
@@ -43,6 +58,7 @@ import static org.junit.Assert.assertThrows;
 import static org.junit.Assert.assertTrue;
 import static org.junit.Assert.fail;
 import static org.msgpack.value.ValueFactory.newArray;
+import static org.msgpack.value.ValueFactory.newInteger;
 import static org.msgpack.value.ValueFactory.newMap;
 import static org.msgpack.value.ValueFactory.newString;
 
@@ -51,6 +67,9 @@ public class TestJsonpathParserPlugin
     @Rule
     public EmbulkTestRuntime runtime = new EmbulkTestRuntime();
 
+    @Rule
+    public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
     private ConfigSource config;
     private JsonpathParserPlugin plugin;
     private MockPageOutput output;
@@ -441,6 +460,58 @@ public class TestJsonpathParserPlugin
         }
     }
 
+    @Test
+    public void useNestedJsonPath()
+            throws Exception
+    {
+        SchemaConfig schema = schema(
+                column("city", STRING, config().set("path", "$.user.address.city")),
+                column("first_sku", STRING, config().set("path", "items[0].sku")),
+                column("last_sku", STRING, config().set("path", "$['items'][-1]['sku']")),
+                column("blue_skus", JSON, config().set("path", "$.items[?(@.color == 'blue')].sku")),
+                column("missing", STRING, config().set("path", "$.user.address.zip.code")));
+        ConfigSource config = this.config.deepCopy().set("columns", schema);
+
+        transaction(config, fileInput(
+                "[",
+                "{\"user\":{\"address\":{\"city\":\"Tokyo\"}},\"items\":[{\"sku\":\"a\",\"color\":\"blue\"},{\"sku\":\"b\",\"color\":\"red\"}]},",
+                "{\"user\":null,\"items\":[]}",
+                "]"
+        ));
+
+        List<Object[]> records = Pages.toObjects(schema.toSchema(), output.pages);
+        assertEquals(2, records.size());
+
+        Object[] record;
+        {
+            record = records.get(0);
+            assertEquals("Tokyo", record[0]);
+            assertEquals("a", record[1]);
+            assertEquals("b", record[2]);
+            assertEquals(newArray(newString("a")), record[3]);
+            assertNull(record[4]);
+        }
+        {
+            record = records.get(1);
+            assertNull(record[0]);
+            assertNull(record[1]);
+            assertNull(record[2]);
+            assertEquals(newArray(), record[3]);
+            assertNull(record[4]);
+        }
+    }
+
+    @Test
+    public void invalidJsonPath()
+    {
+        assertThrows(ConfigException.class, () -> {
+            SchemaConfig schema = schema(column("__c0", STRING, config().set("path", "$[?(@.a")));
+            ConfigSource config = this.config.deepCopy().set("columns", schema);
+
+            transaction(config, fileInput("[{\"a\":\"embulk\"}]"));
+        });
+    }
+
     @Test
     public void notArrayObject()
             throws Exception
@@ -519,6 +590,720 @@ public class TestJsonpathParserPlugin
         recreatePageOutput();
     }
 
+    @Test
+    public void useStreaming()
+            throws Exception
+    {
+        SchemaConfig schema = schema(
+                column("_c0", BOOLEAN), column("_c1", LONG), column("_c2", DOUBLE),
+                column("_c3", STRING), column("_c4", TIMESTAMP, config().set("format", "%Y-%m-%d %H:%M:%S %Z")), column("_c5", JSON));
+        ConfigSource config = this.config.deepCopy().set("columns", schema).set("root", "$.records").set("streaming", true);
+
+        transaction(config, fileInput(
+                "{\"count\":2,\"skipped\":{\"records\":[{\"_c0\":false}]},\"records\":[",
+                "{\"_c0\":true,\"_c1\":10,\"_c2\":0.1,\"_c3\":\"embulk\",\"_c4\":\"2016-01-01 00:00:00 UTC\",\"_c5\":{\"k\":\"v\"}},",
+                "[1, 2, 3],",
+                "{\"_c0\":false,\"_c1\":-10,\"_c2\":1.0,\"_c3\":\"エンバルク\",\"_c4\":\"2016-01-01 00:00:00 +0000\",\"_c5\":[\"e0\",\"e1\"]}",
+                "],\"page\":1}"
+        ));
+
+        List<Object[]> records = Pages.toObjects(schema.toSchema(), output.pages);
+        assertEquals(2, records.size());
+
+        Object[] record;
+        {
+            record = records.get(0);
+            assertEquals(true, record[0]);
+            assertEquals(10L, record[1]);
+            assertEquals(0.1, (Double) record[2], 0.0001);
+            assertEquals("embulk", record[3]);
+            assertEquals(Timestamp.ofEpochSecond(1451606400L), record[4]);
+            assertEquals(newMap(newString("k"), newString("v")), record[5]);
+        }
+        {
+            record = records.get(1);
+            assertEquals(false, record[0]);
+            assertEquals(-10L, record[1]);
+            assertEquals(1.0, (Double) record[2], 0.0001);
+            assertEquals("エンバルク", record[3]);
+            assertEquals(Timestamp.ofEpochSecond(1451606400L), record[4]);
+            assertEquals(newArray(newString("e0"), newString("e1")), record[5]);
+        }
+
+        recreatePageOutput();
+    }
+
+    @Test
+    public void useStreamingWithWildcardAndIndex()
+            throws Exception
+    {
+        SchemaConfig schema = schema(column("_c0", STRING));
+        ConfigSource config = this.config.deepCopy().set("columns", schema).set("root", "$.data[1].items[*]").set("streaming", true);
+
+        transaction(config, fileInputs(new String[][] {
+                new String[] { "{\"data\":[{\"items\":[{\"_c0\":\"skipped\"}]},{\"items\":[{\"_c0\":\"embulk\"},{\"_c0\":\"エンバルク\"}]}]}" },
+                new String[] { "{\"data\":[{},{\"items\":{\"a\":{\"_c0\":\"object\"}}}]}" }
+        }));
+
+        List<Object[]> records = Pages.toObjects(schema.toSchema(), output.pages);
+        assertEquals(3, records.size());
+        assertEquals("embulk", records.get(0)[0]);
+        assertEquals("エンバルク", records.get(1)[0]);
+        assertEquals("object", records.get(2)[0]);
+    }
+
+    @Test
+    public void useStreamingWithObjectRoot()
+            throws Exception
+    {
+        SchemaConfig schema = schema(column("__c0", STRING, config().set("path", "$._c0")));
+        ConfigSource config = this.config.deepCopy().set("columns", schema).set("root", "$[0].root").set("streaming", true);
+
+        transaction(config, fileInput(
+                "[",
+                "{ \"root\": { \"_c0\": \"embulk\" } }",
+                "]"
+        ));
+
+        List<Object[]> records = Pages.toObjects(schema.toSchema(), output.pages);
+        assertEquals(1, records.size());
+        assertEquals("embulk", records.get(0)[0]);
+    }
+
+    @Test
+    public void skipStreamingRootNotFound()
+            throws Exception
+    {
+        SchemaConfig schema = schema(column("_c0", STRING));
+        ConfigSource config = this.config.deepCopy().set("columns", schema).set("root", "$.records").set("streaming", true);
+
+        transaction(config, fileInput("{\"results\":[{\"_c0\":\"embulk\"}]}"));
+
+        List<Object[]> records = Pages.toObjects(schema.toSchema(), output.pages);
+        assertEquals(0, records.size());
+    }
+
+    @Test
+    public void stopOnStreamingBrokenJson()
+    {
+        assertThrows(DataException.class, () -> {
+            SchemaConfig schema = schema(column("_c0", STRING));
+            ConfigSource config = this.config.deepCopy()
+                    .set("columns", schema)
+                    .set("streaming", true)
+                    .set("stop_on_invalid_record", true);
+
+            transaction(config, fileInput("[{\"_c0\":\"embulk\"}, BROKEN"));
+        });
+    }
+
+    @Test
+    public void streamingRequiresSimpleRoot()
+    {
+        assertThrows(ConfigException.class, () -> {
+            SchemaConfig schema = schema(column("_c0", STRING));
+            ConfigSource config = this.config.deepCopy()
+                    .set("columns", schema)
+                    .set("root", "$..records")
+                    .set("streaming", true);
+
+            transaction(config, fileInput("[]"));
+        });
+    }
+
+    @Test
+    public void useJsonEngine()
+            throws Exception
+    {
+        SchemaConfig schema = schema(column("_c0", STRING));
+        for (String engine : new String[] {"jayway", "jackson_streaming"}) {
+            ConfigSource config = this.config.deepCopy().set("columns", schema).set("root", "$.records").set("json_engine", engine);
+
+            transaction(config, fileInput("{\"records\":[{\"_c0\":\"embulk\"},{\"_c0\":\"エンバルク\"}]}"));
+
+            List<Object[]> records = Pages.toObjects(schema.toSchema(), output.pages);
+            assertEquals(2, records.size());
+            assertEquals("embulk", records.get(0)[0]);
+            assertEquals("エンバルク", records.get(1)[0]);
+            recreatePageOutput();
+        }
+    }
+
+    @Test
+    public void useBinaryFormats()
+            throws Exception
+    {
+        SchemaConfig schema = schema(
+                column("_c0", BOOLEAN), column("_c1", LONG), column("_c2", DOUBLE),
+                column("_c3", STRING), column("_c4", TIMESTAMP, config().set("format", "%Y-%m-%d %H:%M:%S %Z")),
+                column("_c5", STRING, config().set("path", "$.nested.value")));
+        for (String format : new String[] {"smile", "cbor"}) {
+            for (String engine : new String[] {"jayway", "jackson_streaming"}) {
+                ConfigSource config = this.config.deepCopy().set("columns", schema).set("root", "$.records")
+                        .set("format", format).set("json_engine", engine);
+
+                transaction(config, binaryFileInput(format.equals("smile") ? new SmileFactory() : new CBORFactory(),
+                        "{\"records\":[{\"_c0\":true,\"_c1\":10,\"_c2\":0.5,\"_c3\":\"embulk\",\"_c4\":\"2016-01-01 00:00:00 UTC\",\"nested\":{\"value\":\"v\"}}]}",
+                        "{\"records\":[{\"_c1\":\"-1\",\"_c3\":\"エンバルク\"}]}"));
+
+                List<Object[]> records = Pages.toObjects(schema.toSchema(), output.pages);
+                assertEquals(2, records.size());
+                assertEquals(true, records.get(0)[0]);
+                assertEquals(10L, records.get(0)[1]);
+                assertEquals(0.5, (Double) records.get(0)[2], 0.0001);
+                assertEquals("embulk", records.get(0)[3]);
+                assertEquals(Timestamp.ofEpochSecond(1451606400L), records.get(0)[4]);
+                assertEquals("v", records.get(0)[5]);
+                assertEquals(-1L, records.get(1)[1]);
+                assertEquals("エンバルク", records.get(1)[3]);
+                recreatePageOutput();
+            }
+        }
+    }
+
+    @Test
+    public void readBinaryValuesOfBinaryFormats()
+            throws Exception
+    {
+        SchemaConfig schema = schema(column("_c0", JSON), column("_c1", STRING));
+        ObjectMapper mapper = new ObjectMapper();
+        ObjectNode record = mapper.createObjectNode();
+        record.putObject("_c0").put("b", new byte[] {0, 1, 2, -1});
+        record.put("_c1", new byte[] {0, 1, 2, -1});
+        ObjectNode document = mapper.createObjectNode();
+        document.putArray("records").add(record);
+        for (String format : new String[] {"smile", "cbor"}) {
+            for (String engine : new String[] {"jayway", "jackson_streaming"}) {
+                ConfigSource config = this.config.deepCopy().set("columns", schema).set("root", "$.records")
+                        .set("format", format).set("json_engine", engine);
+
+                transaction(config, binaryFileInput(format.equals("smile") ? new SmileFactory() : new CBORFactory(), document));
+
+                List<Object[]> records = Pages.toObjects(schema.toSchema(), output.pages);
+                assertEquals(1, records.size());
+                // Binary values are base64 strings, as in their JSON text
+                assertEquals("{\"b\":\"AAEC/w==\"}", records.get(0)[0].toString());
+                assertEquals("AAEC/w==", records.get(0)[1]);
+                recreatePageOutput();
+            }
+        }
+    }
+
+    @Test
+    public void unknownJsonEngine()
+    {
+        assertThrows(ConfigException.class, () -> {
+            SchemaConfig schema = schema(column("_c0", STRING));
+            ConfigSource config = this.config.deepCopy().set("columns", schema).set("json_engine", "simdjson");
+
+            transaction(config, fileInput("[]"));
+        });
+    }
+
+    @Test
+    public void streamingConflictsWithJsonEngine()
+    {
+        assertThrows(ConfigException.class, () -> {
+            SchemaConfig schema = schema(column("_c0", STRING));
+            ConfigSource config = this.config.deepCopy().set("columns", schema).set("json_engine", "jayway").set("streaming", true);
+
+            transaction(config, fileInput("[]"));
+        });
+    }
+
+    @Test
+    public void useParallelism()
+            throws Exception
+    {
+        SchemaConfig schema = schema(column("_c0", LONG), column("_c1", STRING, config().set("path", "$.nested.value")));
+        ConfigSource config = this.config.deepCopy().set("columns", schema).set("parallelism", 4);
+
+        transaction(config, fileInputs(new String[][] {
+                numberedRecords(0, 2500),
+                numberedRecords(2500, 10)
+        }));
+
+        List<Object[]> records = Pages.toObjects(schema.toSchema(), output.pages);
+        assertEquals(2510, records.size());
+        for (int i = 0; i < records.size(); i++) {
+            assertEquals((long) i, records.get(i)[0]);
+            assertEquals("v" + i, records.get(i)[1]);
+        }
+    }
+
+    @Test
+    public void useParallelismWithoutOrder()
+            throws Exception
+    {
+        SchemaConfig schema = schema(column("_c0", LONG));
+        ConfigSource config = this.config.deepCopy().set("columns", schema).set("parallelism", 3)
+                .set("preserve_order", false).set("streaming", true);
+
+        transaction(config, fileInput(numberedRecords(0, 3000)));
+
+        List<Object[]> records = Pages.toObjects(schema.toSchema(), output.pages);
+        assertEquals(3000, records.size());
+        long sum = 0;
+        for (Object[] record : records) {
+            sum += (long) record[0];
+        }
+        assertEquals(2999L * 3000L / 2, sum);
+    }
+
+    @Test
+    public void fillPagesWithParallelism()
+            throws Exception
+    {
+        SchemaConfig schema = schema(column("_c0", LONG), column("_c1", STRING, config().set("path", "$.nested.value")));
+        transaction(this.config.deepCopy().set("columns", schema), fileInput(numberedRecords(0, 30000)));
+        int serialPages = output.pages.size();
+
+        for (boolean preserveOrder : new boolean[] {true, false}) {
+            output = new MockPageOutput();
+            ConfigSource config = this.config.deepCopy().set("columns", schema).set("parallelism", 3)
+                    .set("preserve_order", preserveOrder);
+            transaction(config, fileInput(numberedRecords(0, 30000)));
+
+            assertEquals(30000, Pages.toObjects(schema.toSchema(), output.pages).size());
+            if (preserveOrder) {
+                // Each batch ends its last page, but a batch fills several pages.
+                assertTrue(output.pages.size() <= serialPages + serialPages / ParallelRecordMaterializer.PAGES_PER_BATCH + 6);
+            }
+            else {
+                // Only the last page of each worker is partly filled.
+                assertTrue(output.pages.size() <= serialPages + 3);
+            }
+        }
+    }
+
+    @Test
+    public void stopOnBrokenColumnWithParallelism()
+    {
+        assertThrows(DataException.class, () -> {
+            SchemaConfig schema = schema(column("_c1", TIMESTAMP));
+            ConfigSource config = this.config.deepCopy().set("columns", schema)
+                    .set("parallelism", 2)
+                    .set("stop_on_invalid_record", true);
+
+            transaction(config, fileInput("[{\"_c1\" : \"INVALID\"}]"));
+        });
+    }
+
+    @Test
+    public void useJsonLines()
+            throws Exception
+    {
+        SchemaConfig schema = schema(column("_c0", STRING), column("_c1", LONG));
+        ConfigSource config = this.config.deepCopy().set("columns", schema).set("format", "jsonl");
+
+        transaction(config, fileInput(
+                "{\"_c0\":\"embulk\",\"_c1\":1}",
+                "\"not_map_value\"",
+                "{\"_c0\":\"エンバルク\",\"_c1\":2}",
+                "[{\"_c0\":\"array\",\"_c1\":3}]"
+        ));
+
+        List<Object[]> records = Pages.toObjects(schema.toSchema(), output.pages);
+        assertEquals(3, records.size());
+        assertEquals("embulk", records.get(0)[0]);
+        assertEquals(1L, records.get(0)[1]);
+        assertEquals("エンバルク", records.get(1)[0]);
+        assertEquals(2L, records.get(1)[1]);
+        assertEquals("array", records.get(2)[0]);
+        assertEquals(3L, records.get(2)[1]);
+    }
+
+    @Test
+    public void useConcatenatedWithRootPath()
+            throws Exception
+    {
+        SchemaConfig schema = schema(column("_c0", STRING));
+        for (boolean streaming : new boolean[] {false, true}) {
+            ConfigSource config = this.config.deepCopy().set("columns", schema).set("format", "concatenated")
+                    .set("root", "$.records").set("streaming", streaming);
+
+            transaction(config, fileInput(
+                    "{\"records\":[{\"_c0\":\"a\"},{\"_c0\":\"b\"}],\"next\":{\"records\":[]}}{\"other\":1}",
+                    "{\"records\":{\"_c0\":\"c\"}} {\"records\":[{\"_c0\":\"d\"}]}"
+            ));
+
+            List<Object[]> records = Pages.toObjects(schema.toSchema(), output.pages);
+            assertEquals(4, records.size());
+            assertEquals("a", records.get(0)[0]);
+            assertEquals("b", records.get(1)[0]);
+            assertEquals("c", records.get(2)[0]);
+            assertEquals("d", records.get(3)[0]);
+
+            recreatePageOutput();
+        }
+    }
+
+    @Test
+    public void unknownFormat()
+    {
+        assertThrows(ConfigException.class, () -> {
+            SchemaConfig schema = schema(column("_c0", STRING));
+            ConfigSource config = this.config.deepCopy().set("columns", schema).set("format", "xml");
+
+            transaction(config, fileInput("[]"));
+        });
+    }
+
+    @Test
+    public void useTimestampCache()
+            throws Exception
+    {
+        SchemaConfig schema = schema(
+                column("_c0", TIMESTAMP, config().set("format", "%Y-%m-%d %H:%M:%S")),
+                column("_c1", TIMESTAMP, config().set("format", "%Y-%m-%d %H:%M:%S").set("timestamp_cache_size", 0)));
+        ConfigSource config = this.config.deepCopy().set("columns", schema).set("default_timestamp_cache_size", 1);
+
+        transaction(config, fileInput(
+                "[",
+                "{\"_c0\":\"2016-01-01 00:00:00\",\"_c1\":\"2016-01-01 00:00:00\"},",
+                "{\"_c0\":\"2016-01-01 00:00:00\",\"_c1\":\"2016-01-01 00:00:00\"},",
+                "{\"_c0\":\"2016-01-01 00:00:01\",\"_c1\":\"2016-01-01 00:00:01\"},",
+                "{\"_c0\":\"INVALID\",\"_c1\":\"2016-01-01 00:00:01\"},",
+                "{\"_c0\":\"2016-01-01 00:00:01\",\"_c1\":\"2016-01-01 00:00:01\"}",
+                "]"
+        ));
+
+        List<Object[]> records = Pages.toObjects(schema.toSchema(), output.pages);
+        assertEquals(4, records.size());
+        long[] expected = {1451606400L, 1451606400L, 1451606401L, 1451606401L};
+        for (int i = 0; i < expected.length; i++) {
+            assertEquals(Timestamp.ofEpochSecond(expected[i]), records.get(i)[0]);
+            assertEquals(Timestamp.ofEpochSecond(expected[i]), records.get(i)[1]);
+        }
+    }
+
+    @Test
+    public void negativeTimestampCacheSize()
+    {
+        assertThrows(ConfigException.class, () -> {
+            SchemaConfig schema = schema(column("_c0", TIMESTAMP));
+            ConfigSource config = this.config.deepCopy().set("columns", schema).set("default_timestamp_cache_size", -1);
+
+            transaction(config, fileInput("[]"));
+        });
+    }
+
+    @Test
+    public void useTimestampUnit()
+            throws Exception
+    {
+        SchemaConfig schema = schema(
+                column("_c0", TIMESTAMP, config().set("unit", "ms")),
+                column("_c1", TIMESTAMP, config().set("unit", "s").set("format", "%Y-%m-%d %H:%M:%S")));
+        ConfigSource config = this.config.deepCopy().set("columns", schema);
+
+        transaction(config, fileInput(
+                "[",
+                "{\"_c0\":1451606400123,\"_c1\":1451606400.5},",
+                "{\"_c0\":\"2016-01-01 00:00:00.000000 +0000\",\"_c1\":\"2016-01-01 00:00:01\"}",
+                "]"
+        ));
+
+        List<Object[]> records = Pages.toObjects(schema.toSchema(), output.pages);
+        assertEquals(2, records.size());
+        assertEquals(Timestamp.ofEpochSecond(1451606400L, 123000000L), records.get(0)[0]);
+        assertEquals(Timestamp.ofEpochSecond(1451606400L, 500000000L), records.get(0)[1]);
+        assertEquals(Timestamp.ofEpochSecond(1451606400L), records.get(1)[0]);
+        assertEquals(Timestamp.ofEpochSecond(1451606401L), records.get(1)[1]);
+    }
+
+    @Test
+    public void unregisterMetricsAfterRun()
+            throws Exception
+    {
+        SchemaConfig schema = schema(column("_c0", STRING));
+        ConfigSource config = this.config.deepCopy().set("columns", schema);
+
+        transaction(config, fileInput(
+                "[",
+                "{\"_c0\":\"embulk\"},",
+                "\"not_map_value\"",
+                "]"
+        ));
+
+        assertEquals(1, Pages.toObjects(schema.toSchema(), output.pages).size());
+        assertTrue(ManagementFactory.getPlatformMBeanServer()
+                .queryNames(new ObjectName("org.embulk.parser.jsonpath:type=ParserMetrics,*"), null).isEmpty());
+    }
+
+    @Test
+    public void writeInvalidRecordOutput()
+            throws Exception
+    {
+        File directory = temporaryFolder.newFolder();
+        SchemaConfig schema = schema(column("_c0", STRING), column("_c1", BOOLEAN));
+        ConfigSource config = this.config.deepCopy().set("columns", schema)
+                .set("invalid_record_output", new File(directory, "invalid_").getPath());
+
+        transaction(config, fileInput(
+                "[",
+                "{\"_c0\":\"a\",\"_c1\":true},",
+                "{\"_c0\":\"b\",\"_c1\":\"maybe\"},",
+                "\"not_map_value\"",
+                "]"
+        ));
+
+        assertEquals(1, Pages.toObjects(schema.toSchema(), output.pages).size());
+        File[] files = directory.listFiles();
+        assertEquals(1, files.length);
+        assertTrue(files[0].getName().matches("invalid_[0-9a-f-]{36}_[0-9]+\\.jsonl"));
+        List<String> lines = Files.readAllLines(files[0].toPath(), StandardCharsets.UTF_8);
+        assertEquals(2, lines.size());
+        assertEquals("{\"file\":0,\"reason\":\"invalid_record\",\"column\":\"_c1\",\"error\":\"can not convert '\\\"maybe\\\"' to Boolean\","
+                + "\"record\":{\"_c0\":\"b\",\"_c1\":\"maybe\"}}", lines.get(0));
+        assertEquals("{\"file\":0,\"reason\":\"invalid_record\",\"column\":null,"
+                + "\"error\":\"Json string is not representing map value json='\\\"not_map_value\\\"'\",\"record\":\"not_map_value\"}", lines.get(1));
+    }
+
+    @Test
+    public void useStreamingWithTokenDecoding()
+            throws Exception
+    {
+        SchemaConfig schema = schema(
+                column("_c0", STRING), column("_c1", LONG, config().set("path", "$.nested.v[1]")),
+                column("_c2", JSON, config().set("path", "$.nested")), column("_c3", BOOLEAN));
+        ConfigSource config = this.config.deepCopy().set("columns", schema).set("root", "$.records").set("streaming", true);
+
+        transaction(config, fileInput(
+                "{\"records\":[",
+                "{\"unused\":{\"deep\":[1,2,{\"x\":3}]},\"_c0\":\"embulk\",\"nested\":{\"v\":[1,\"2\"]},\"_c3\":\"yes\"},",
+                "\"not_map_value\",",
+                "{\"_c0\":\"a\",\"_c0\":\"b\",\"_c3\":true}",
+                "]}"
+        ));
+
+        List<Object[]> records = Pages.toObjects(schema.toSchema(), output.pages);
+        assertEquals(2, records.size());
+        assertEquals("embulk", records.get(0)[0]);
+        assertEquals(2L, records.get(0)[1]);
+        assertEquals(newMap(newString("v"), newArray(newInteger(1), newString("2"))), records.get(0)[2]);
+        assertEquals(true, records.get(0)[3]);
+        assertEquals("b", records.get(1)[0]);
+        assertNull(records.get(1)[1]);
+        assertNull(records.get(1)[2]);
+        assertEquals(true, records.get(1)[3]);
+    }
+
+    @Test
+    public void convertTokensAsTrees()
+            throws Exception
+    {
+        SchemaConfig schema = schema(column("b", BOOLEAN), column("l", LONG), column("d", DOUBLE), column("s", STRING));
+        String[] lines = {
+                "[{\"b\":\"TRUE\",\"l\":\" 12 \",\"d\":\" 2.5 \",\"s\":12},",
+                "{\"b\":1,\"l\":\"1e2\",\"d\":3,\"s\":1.5},",
+                "{\"b\":\"oFf\",\"l\":1.9,\"d\":\"x\",\"s\":\"\\u00e9\"},",
+                "{\"b\":0,\"l\":\"x\",\"d\":-1,\"s\":-9223372036854775808},",
+                "{\"b\":\"Y\",\"l\":\"+7\",\"d\":\" \",\"s\":\"\"},",
+                "{\"b\":\"tRuE\",\"l\":\"9223372036854775808\",\"d\":\"-1e-3\",\"s\":true}]",
+        };
+        List<List<Object[]>> results = new ArrayList<>();
+        for (String engine : new String[] {"jayway", "jackson_streaming"}) {
+            ConfigSource config = this.config.deepCopy().set("columns", schema).set("json_engine", engine);
+            transaction(config, fileInput(lines));
+            results.add(Pages.toObjects(schema.toSchema(), output.pages));
+            recreatePageOutput();
+        }
+
+        assertEquals(6, results.get(1).size());
+        for (int i = 0; i < 6; i++) {
+            assertArrayEquals(results.get(0).get(i), results.get(1).get(i));
+        }
+        assertArrayEquals(new Object[] {true, 12L, 2.5, "12"}, results.get(1).get(0));
+        assertArrayEquals(new Object[] {true, 100L, 3.0, "1.5"}, results.get(1).get(1));
+        assertArrayEquals(new Object[] {false, 1L, 0.0, "\u00e9"}, results.get(1).get(2));
+        assertArrayEquals(new Object[] {false, 0L, -1.0, "-9223372036854775808"}, results.get(1).get(3));
+        assertArrayEquals(new Object[] {true, 7L, 0.0, ""}, results.get(1).get(4));
+        assertArrayEquals(new Object[] {true, 0L, -0.001, "true"}, results.get(1).get(5));
+    }
+
+    @Test
+    public void resynchronizeStreamingInBrokenArray()
+            throws Exception
+    {
+        SchemaConfig schema = schema(column("_c0", STRING));
+        ConfigSource config = this.config.deepCopy().set("columns", schema).set("root", "$.records").set("streaming", true);
+
+        transaction(config, fileInput(
+                "{\"records\":[",
+                "{\"_c0\":\"a\"},",
+                "{\"_c0\":\"truncated",
+                "{\"_c0\":\"b\"},",
+                "{\"_c0\":[1, 2}, \"x\":1},",
+                "{\"_c0\":\"c\"}",
+                "], \"after\":{\"_c0\":\"d\"}}"
+        ));
+
+        List<Object[]> records = Pages.toObjects(schema.toSchema(), output.pages);
+        assertEquals(3, records.size());
+        assertEquals("a", records.get(0)[0]);
+        assertEquals("b", records.get(1)[0]);
+        assertEquals("c", records.get(2)[0]);
+    }
+
+    @Test
+    public void writeResynchronizedJsonLines()
+            throws Exception
+    {
+        File directory = temporaryFolder.newFolder();
+        SchemaConfig schema = schema(column("_c0", STRING));
+        ConfigSource config = this.config.deepCopy().set("columns", schema).set("root", "$.records").set("streaming", true)
+                .set("format", "jsonl").set("invalid_record_output", new File(directory, "invalid_").getPath());
+
+        transaction(config, fileInput(
+                "{\"records\":[{\"_c0\":\"a\"},{\"_c0\" \"b\"},{\"_c0\":\"c\"}]}",
+                "{\"records\":[{\"_c0\":\"d\"}]}"
+        ));
+
+        List<Object[]> records = Pages.toObjects(schema.toSchema(), output.pages);
+        assertEquals(3, records.size());
+        assertEquals("a", records.get(0)[0]);
+        assertEquals("c", records.get(1)[0]);
+        assertEquals("d", records.get(2)[0]);
+        List<String> lines = Files.readAllLines(directory.listFiles()[0].toPath(), StandardCharsets.UTF_8);
+        assertEquals(1, lines.size());
+        assertTrue(lines.get(0), lines.get(0).startsWith("{\"file\":0,\"reason\":\"invalid_json\",\"column\":null,"));
+        assertTrue(lines.get(0), lines.get(0).endsWith(",\"range\":[26,39]}"));
+    }
+
+    @Test
+    public void usePrefetch()
+            throws Exception
+    {
+        SchemaConfig schema = schema(column("_c0", LONG), column("_c1", STRING, config().set("path", "$.nested.value")));
+        for (boolean streaming : new boolean[] {false, true}) {
+            ConfigSource config = this.config.deepCopy().set("columns", schema).set("streaming", streaming)
+                    .set("prefetch", true).set("prefetch_buffer_bytes", 100);
+
+            transaction(config, fileInputs(new String[][] {numberedRecords(0, 2500), new String[] {"BROKEN"}, numberedRecords(2500, 10)}));
+
+            List<Object[]> records = Pages.toObjects(schema.toSchema(), output.pages);
+            assertEquals(2510, records.size());
+            for (int i = 0; i < records.size(); i++) {
+                assertEquals((long) i, records.get(i)[0]);
+                assertEquals("v" + i, records.get(i)[1]);
+            }
+            recreatePageOutput();
+        }
+    }
+
+    @Test
+    public void stopOnBrokenJsonWithPrefetch()
+    {
+        assertThrows(DataException.class, () -> {
+            SchemaConfig schema = schema(column("_c0", STRING));
+            ConfigSource config = this.config.deepCopy()
+                    .set("columns", schema)
+                    .set("prefetch", true)
+                    .set("stop_on_invalid_record", true);
+
+            transaction(config, fileInputs(new String[][] {new String[] {"[{\"_c0\":\"embulk\"}]"}, new String[] {"BROKEN"}}));
+        });
+    }
+
+    @Test
+    public void nonPositivePrefetchBufferBytes()
+    {
+        assertThrows(ConfigException.class, () -> {
+            SchemaConfig schema = schema(column("_c0", STRING));
+            ConfigSource config = this.config.deepCopy().set("columns", schema).set("prefetch", true).set("prefetch_buffer_bytes", 0);
+
+            transaction(config, fileInput("[]"));
+        });
+    }
+
+    @Test
+    public void usePageQueue()
+            throws Exception
+    {
+        SchemaConfig schema = schema(column("_c0", LONG), column("_c1", STRING, config().set("path", "$.nested.value")));
+        for (int parallelism : new int[] {1, 3}) {
+            ConfigSource config = this.config.deepCopy().set("columns", schema).set("parallelism", parallelism).set("page_queue_size", 2);
+
+            transaction(config, fileInputs(new String[][] {numberedRecords(0, 5000), numberedRecords(5000, 10)}));
+
+            List<Object[]> records = Pages.toObjects(schema.toSchema(), output.pages);
+            assertEquals(5010, records.size());
+            for (int i = 0; i < records.size(); i++) {
+                assertEquals((long) i, records.get(i)[0]);
+                assertEquals("v" + i, records.get(i)[1]);
+            }
+            recreatePageOutput();
+        }
+    }
+
+    @Test
+    public void negativePageQueueSize()
+    {
+        assertThrows(ConfigException.class, () -> {
+            SchemaConfig schema = schema(column("_c0", STRING));
+            ConfigSource config = this.config.deepCopy().set("columns", schema).set("page_queue_size", -1);
+
+            transaction(config, fileInput("[]"));
+        });
+    }
+
+    @Test
+    public void splitRootArray()
+            throws Exception
+    {
+        SchemaConfig schema = schema(column("_c0", LONG), column("_c1", STRING, config().set("path", "$.nested.value")));
+        for (int parallelism : new int[] {2, 3}) {
+            ConfigSource config = this.config.deepCopy().set("columns", schema).set("parallelism", parallelism)
+                    .set("split_root_array", true).set("split_chunk_bytes", 100);
+
+            transaction(config, fileInputs(new String[][] {numberedRecords(0, 2500), new String[] {"[{\"_c0\":", "]"}, numberedRecords(2500, 10)}));
+
+            List<Object[]> records = Pages.toObjects(schema.toSchema(), output.pages);
+            assertEquals(2510, records.size());
+            for (int i = 0; i < records.size(); i++) {
+                assertEquals((long) i, records.get(i)[0]);
+                assertEquals("v" + i, records.get(i)[1]);
+            }
+            recreatePageOutput();
+        }
+    }
+
+    @Test
+    public void splitRootArrayOnOneThread()
+    {
+        assertThrows(ConfigException.class, () -> {
+            SchemaConfig schema = schema(column("_c0", STRING));
+            ConfigSource config = this.config.deepCopy().set("columns", schema).set("split_root_array", true);
+
+            transaction(config, fileInput("[]"));
+        });
+    }
+
+    @Test
+    public void splitRootArrayOfJsonLines()
+    {
+        assertThrows(ConfigException.class, () -> {
+            SchemaConfig schema = schema(column("_c0", STRING));
+            ConfigSource config = this.config.deepCopy().set("columns", schema).set("format", "jsonl").set("split_root_array", true)
+                    .set("parallelism", 2);
+
+            transaction(config, fileInput("[]"));
+        });
+    }
+
+    private String[] numberedRecords(int start, int count)
+    {
+        String[] lines = new String[count + 2];
+        lines[0] = "[";
+        for (int i = 0; i < count; i++) {
+            int n = start + i;
+            lines[i + 1] = "{\"_c0\":" + n + ",\"nested\":{\"value\":\"v" + n + "\"}}" + (i + 1 < count ? "," : "");
+        }
+        lines[count + 1] = "]";
+        return lines;
+    }
+
     private FileInput fileInputs(String[][] fileLines)
             throws Exception
     {
@@ -544,6 +1329,29 @@ public class TestJsonpathParserPlugin
         return new InputStreamFileInput(runtime.getBufferAllocator(), provider(in));
     }
 
+    // A file of the given documents, each of which is encoded from text JSON by the factory.
+    private FileInput binaryFileInput(JsonFactory factory, String... documents)
+            throws Exception
+    {
+        ObjectMapper textMapper = new ObjectMapper();
+        JsonNode[] nodes = new JsonNode[documents.length];
+        for (int i = 0; i < documents.length; i++) {
+            nodes[i] = textMapper.readTree(documents[i]);
+        }
+        return binaryFileInput(factory, nodes);
+    }
+
+    private FileInput binaryFileInput(JsonFactory factory, JsonNode... documents)
+            throws Exception
+    {
+        ObjectMapper mapper = new ObjectMapper(factory);
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        for (JsonNode document : documents) {
+            out.write(mapper.writeValueAsBytes(document));
+        }
+        return new InputStreamFileInput(runtime.getBufferAllocator(), provider(new ByteArrayInputStream(out.toByteArray())));
+    }
+
     private InputStreamFileInput.IteratorProvider provider(InputStream... inputStreams)
             throws IOException
     {
@@ -0,0 +1,57 @@
+package org.embulk.parser.jsonpath;
+
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+
+public class TestNonClosingInputStream
+{
+    @Test
+    public void readInBulk()
+            throws IOException
+    {
+        InputStream in = new NonClosingInputStream(new ByteArrayInputStream("embulk".getBytes(StandardCharsets.UTF_8)));
+        byte[] buf = new byte[4];
+        assertEquals(4, in.read(buf, 0, 4));
+        assertArrayEquals("embu".getBytes(StandardCharsets.UTF_8), buf);
+        assertEquals(2, in.available());
+        assertEquals(1, in.skip(1));
+        assertEquals('k', in.read());
+        assertEquals(-1, in.read(buf, 0, 4));
+    }
+
+    @Test
+    public void ignoreClose()
+            throws IOException
+    {
+        CloseTrackingInputStream wrapped = new CloseTrackingInputStream();
+        InputStream in = new NonClosingInputStream(wrapped);
+        in.close();
+        assertFalse(wrapped.closed);
+        assertEquals('e', in.read());
+    }
+
+    private static class CloseTrackingInputStream
+            extends ByteArrayInputStream
+    {
+        private boolean closed;
+
+        CloseTrackingInputStream()
+        {
+            super("embulk".getBytes(StandardCharsets.UTF_8));
+        }
+
+        @Override
+        public void close()
+        {
+            closed = true;
+        }
+    }
+}
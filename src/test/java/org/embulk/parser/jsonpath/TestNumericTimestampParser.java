@@ -0,0 +1,71 @@
+package org.embulk.parser.jsonpath;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.JsonNodeFactory;
+import org.embulk.config.ConfigException;
+import org.embulk.spi.DataException;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.time.Instant;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertThrows;
+
+public class TestNumericTimestampParser
+{
+    private static final ObjectMapper OBJECT_MAPPER = new ObjectMapper();
+    private static final TimestampColumnParser TEXT_PARSER = value -> Instant.parse(value);
+
+    @Test
+    public void convertIntegers()
+            throws IOException
+    {
+        assertEquals(Instant.ofEpochSecond(1451606400L), parse("s", "1451606400"));
+        assertEquals(Instant.ofEpochSecond(1451606400L, 123000000), parse("ms", "1451606400123"));
+        assertEquals(Instant.ofEpochSecond(1451606400L, 123456000), parse("us", "1451606400123456"));
+        assertEquals(Instant.ofEpochSecond(1451606400L, 123456789), parse("ns", "1451606400123456789"));
+        assertEquals(Instant.ofEpochSecond(-1L, 999000000), parse("ms", "-1"));
+    }
+
+    @Test
+    public void convertFractions()
+            throws IOException
+    {
+        assertEquals(Instant.ofEpochSecond(1451606400L, 500000000), parse("s", "1451606400.5"));
+        assertEquals(Instant.ofEpochSecond(1451606400L, 123456000), parse("ms", "1451606400123.456"));
+        assertEquals(Instant.ofEpochSecond(-2L, 500000000), parse("s", "-1.5"));
+        assertEquals(Instant.ofEpochSecond(1L, 1), parse("ns", "1000000001.9"));
+    }
+
+    @Test
+    public void parseStringsWithTextParser()
+            throws IOException
+    {
+        assertEquals(Instant.ofEpochSecond(1451606400L), parse("ms", "\"2016-01-01T00:00:00Z\""));
+    }
+
+    @Test
+    public void throwOnOutOfRange()
+    {
+        assertThrows(DataException.class, () -> parse("s", "99999999999999999999"));
+        assertThrows(DataException.class, () -> parse("s", "1e300"));
+        assertThrows(DataException.class,
+                () -> new NumericTimestampParser(TimestampUnit.SECONDS, TEXT_PARSER).parse(JsonNodeFactory.instance.numberNode(Double.NaN)));
+    }
+
+    @Test
+    public void unknownUnit()
+    {
+        assertEquals(TimestampUnit.MICROSECONDS, TimestampUnit.fromString("us"));
+        assertThrows(ConfigException.class, () -> TimestampUnit.fromString("sec"));
+    }
+
+    private static Instant parse(String unit, String json)
+            throws IOException
+    {
+        JsonNode value = OBJECT_MAPPER.readTree(json);
+        return new NumericTimestampParser(TimestampUnit.fromString(unit), TEXT_PARSER).parse(value);
+    }
+}
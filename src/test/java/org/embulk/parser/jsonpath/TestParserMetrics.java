@@ -0,0 +1,55 @@
+package org.embulk.parser.jsonpath;
+
+import org.embulk.parser.jsonpath.ParserMetrics.SkipReason;
+import org.junit.Test;
+
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+
+public class TestParserMetrics
+{
+    @Test
+    public void countAndSummarize()
+    {
+        ParserMetrics metrics = new ParserMetrics();
+        metrics.addFile();
+        metrics.addBytes(100);
+        metrics.addBytes(23);
+        metrics.addRecord();
+        metrics.addRecord();
+        metrics.addSkipped(SkipReason.INVALID_RECORD);
+        metrics.addSkipped(SkipReason.ROOT_NOT_FOUND);
+        metrics.addSkipped(SkipReason.INVALID_RECORD);
+        metrics.addParseNanos(TimeUnit.MILLISECONDS.toNanos(5));
+        metrics.addPathEvaluationNanos(TimeUnit.MILLISECONDS.toNanos(2));
+        metrics.addTypecastNanos(TimeUnit.MILLISECONDS.toNanos(3));
+        metrics.addPageBuildingNanos(TimeUnit.MICROSECONDS.toNanos(1500));
+
+        assertEquals(1, metrics.getFiles());
+        assertEquals(123, metrics.getBytes());
+        assertEquals(2, metrics.getRecords());
+        assertEquals(0, metrics.getSkippedInvalidJson());
+        assertEquals(1, metrics.getSkippedRootNotFound());
+        assertEquals(2, metrics.getSkippedInvalidRecords());
+        assertEquals(5, metrics.getParseMillis());
+        assertEquals(1, metrics.getPageBuildingMillis());
+        assertEquals("1 files, 123 bytes, 2 records, skipped 0 invalid JSON, 1 root not found, 2 invalid records; "
+                + "parse 5 ms, path evaluation 2 ms, typecast 3 ms, page building 1 ms", metrics.summary());
+    }
+
+    @Test
+    public void sampleOneRecordInInterval()
+    {
+        ParserMetrics.Sampler sampler = new ParserMetrics.Sampler();
+        int timed = 0;
+        for (int i = 0; i < ParserMetrics.SAMPLE_INTERVAL * 3; i++) {
+            if (sampler.next()) {
+                timed++;
+                assertEquals(ParserMetrics.SAMPLE_INTERVAL - 1, i % ParserMetrics.SAMPLE_INTERVAL);
+            }
+        }
+        assertEquals(3, timed);
+        assertEquals(ParserMetrics.SAMPLE_INTERVAL * 10L, sampler.scale(10));
+    }
+}
@@ -0,0 +1,57 @@
+package org.embulk.parser.jsonpath;
+
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertThrows;
+
+public class TestRewindableInputStream
+{
+    @Test
+    public void rewind()
+            throws IOException
+    {
+        RewindableInputStream in = new RewindableInputStream(new ByteArrayInputStream("embulk-parser".getBytes(StandardCharsets.UTF_8)), 4);
+        byte[] buf = new byte[6];
+        assertEquals(6, in.read(buf, 0, 6));
+        assertEquals(6, in.getPosition());
+
+        InputStream again = in.rewind(3);
+        assertEquals(3, again.read(buf, 0, 6));
+        assertArrayEquals("ulk".getBytes(StandardCharsets.UTF_8), new byte[] {buf[0], buf[1], buf[2]});
+        assertEquals('-', again.read());
+        assertEquals(7, in.getPosition());
+
+        InputStream rest = in.rewind(7);
+        assertEquals('p', rest.read());
+    }
+
+    @Test
+    public void rewindAfterReadingMoreThanWindow()
+            throws IOException
+    {
+        RewindableInputStream in = new RewindableInputStream(new ByteArrayInputStream("embulk-parser".getBytes(StandardCharsets.UTF_8)), 4);
+        byte[] buf = new byte[10];
+        assertEquals(10, in.read(buf, 0, 10));
+
+        InputStream again = in.rewind(6);
+        assertEquals('-', again.read());
+        assertEquals('p', again.read());
+    }
+
+    @Test
+    public void failToRewindBeforeWindow()
+            throws IOException
+    {
+        RewindableInputStream in = new RewindableInputStream(new ByteArrayInputStream("embulk-parser".getBytes(StandardCharsets.UTF_8)), 4);
+        in.read(new byte[10], 0, 10);
+        assertThrows(IOException.class, () -> in.rewind(5));
+        assertThrows(IOException.class, () -> in.rewind(11));
+    }
+}
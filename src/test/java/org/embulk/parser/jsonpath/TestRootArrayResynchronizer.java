@@ -0,0 +1,146 @@
+package org.embulk.parser.jsonpath;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertThrows;
+
+public class TestRootArrayResynchronizer
+{
+    private static final ObjectMapper OBJECT_MAPPER = new ObjectMapper();
+
+    @Test
+    public void skipToNextElement()
+            throws IOException
+    {
+        assertEquals("[{\"a\":1}, skipped 16..23, {\"a\":4}]", read("$", "[{\"a\":1},{\"a\":2 \"b\":3},{\"a\":4}]"));
+        assertEquals("[{\"a\":1}, skipped 18..21, {\"a\":4}]", read("$", "[{\"a\":1},{\"a\":[1,2}},{\"a\":4}]"));
+        assertEquals("[{\"a\":1}, skipped 19..22, {\"a\":4}]", read("$", "[{\"a\":1},{\"a\":\"]}\" 1},{\"a\":4}]"));
+    }
+
+    @Test
+    public void skipUnrecognizedToken()
+            throws IOException
+    {
+        assertEquals("[1, skipped 4..8, 2]", read("$", "[1, tru, 2]"));
+        assertEquals("[1, skipped 4..14, 2]", read("$", "[1, tru\"x,{y\", 2]"));
+        // The token of a value in an object starts at the value or at its name, depending on the version of Jackson.
+        assertEquals("[{\"a\":1}, skipped, {\"a\":2}]", withoutOffsets(read("$", "[{\"a\":1}, {\"a\":tru}, {\"a\":2}]")));
+        assertEquals("[{\"a\":1}, skipped, {\"a\":2}]", withoutOffsets(read("$", "[{\"a\":1}, {\"a\":tru \"b\":\"x,{y\"}, {\"a\":2}]")));
+        assertEquals("[{\"a\":1}, skipped, {\"a\":2}]", withoutOffsets(read("$", "[{\"a\":1}, {\"a\":tru\"x,{y\"}, {\"a\":2}]")));
+        assertEquals("[{\"a\":1}, skipped, {\"a\":2}]", withoutOffsets(read("$", "[{\"a\":1}, {\"a\":nul,\"b\":\"x,{y\"}, {\"a\":2}]")));
+    }
+
+    @Test
+    public void resumeAtTruncatedElement()
+            throws IOException
+    {
+        assertEquals("[{\"a\":1}, {\"a\":2}, skipped 16..16, {\"a\":3}]", read("$", "[{\"a\":1},{\"a\":2}{\"a\":3}]"));
+        assertEquals("[{\"a\":1}, skipped 17..18, {\"a\":3}, {\"a\":4}]", read("$", "[{\"a\":1},\n{\"a\":\"x\n{\"a\":3},\n{\"a\":4}]"));
+    }
+
+    @Test
+    public void readRestOfDocuments()
+            throws IOException
+    {
+        assertEquals("[{\"a\":1}, skipped 33..36, {\"a\":4}, {\"a\":5}]",
+                read("$.records", "{\"x\":1,\"records\":[{\"a\":1},{\"a\":2,,},{\"a\":4}],\"y\":[2]}\n{\"records\":[{\"a\":5}]}"));
+    }
+
+    @Test
+    public void skipToEnd()
+            throws IOException
+    {
+        assertEquals("[{\"a\":1}, skipped 14..15]", read("$", "[{\"a\":1},{\"a\":2"));
+        assertEquals("[{\"a\":1}, skipped 16..31]", read("$", "[{\"a\":1},{\"a\":2 \"b\":[3,{\"a\":4}]"));
+    }
+
+    @Test
+    public void skipToNextLine()
+            throws IOException
+    {
+        assertEquals("[{\"a\":1}, skipped 8..16, {\"a\":3}]", readLines("{\"a\":1}\n{\"a\" 2}\n{\"a\":3}"));
+        assertEquals("[{\"a\":1}, skipped 9..16, {\"a\":3}]", readLines("{\"a\":1}\n\n{\"a\":2\n{\"a\":3}\n"));
+        assertEquals("[skipped 0..4, {\"a\":2}, skipped 12..14]", readLines("tru\n{\"a\":2}\n[1"));
+    }
+
+    @Test
+    public void throwOutOfRootArray()
+            throws IOException
+    {
+        try (RootArrayResynchronizer resync = new RootArrayResynchronizer(OBJECT_MAPPER.getFactory(), SimpleJsonPath.parse("$.records").get(),
+                new ByteArrayInputStream("{\"x\":1 \"records\":[]}".getBytes(StandardCharsets.UTF_8)))) {
+            resync.getReader().nextDocument();
+            JsonProcessingException e = assertThrows(JsonProcessingException.class, () -> resync.getReader().seek());
+            assertFalse(resync.resynchronize(resync.toFileOffset(e.getLocation().getByteOffset())));
+        }
+    }
+
+    private static String read(String root, String json)
+            throws IOException
+    {
+        List<String> results = new ArrayList<>();
+        try (RootArrayResynchronizer resync = new RootArrayResynchronizer(OBJECT_MAPPER.getFactory(), SimpleJsonPath.parse(root).get(),
+                new ByteArrayInputStream(json.getBytes(StandardCharsets.UTF_8)))) {
+            while (resync.getReader().nextDocument()) {
+                resync.getReader().seek();
+                while (true) {
+                    try {
+                        while (resync.getReader().next()) {
+                            results.add(OBJECT_MAPPER.readTree(resync.getParser()).toString());
+                        }
+                        break;
+                    }
+                    catch (JsonProcessingException e) {
+                        if (!resync.resynchronize(e)) {
+                            throw e;
+                        }
+                        results.add("skipped " + resync.getSkippedFrom() + ".." + resync.getSkippedTo());
+                    }
+                }
+                resync.getReader().finishDocument();
+            }
+        }
+        return results.toString();
+    }
+
+    // Reads JSON Lines, going on at the next line after a malformed one
+    private static String readLines(String json)
+            throws IOException
+    {
+        List<String> results = new ArrayList<>();
+        long documentEnd = 0;
+        try (RootArrayResynchronizer resync = new RootArrayResynchronizer(OBJECT_MAPPER.getFactory(), SimpleJsonPath.parse("$").get(),
+                new ByteArrayInputStream(json.getBytes(StandardCharsets.UTF_8)))) {
+            while (true) {
+                try {
+                    while (resync.getParser().nextToken() != null) {
+                        results.add(OBJECT_MAPPER.readTree(resync.getParser()).toString());
+                        documentEnd = resync.getParser().getCurrentLocation().getByteOffset();
+                    }
+                    break;
+                }
+                catch (JsonProcessingException e) {
+                    resync.resynchronizeLine(documentEnd);
+                    results.add("skipped " + resync.getSkippedFrom() + ".." + resync.getSkippedTo());
+                    documentEnd = resync.getSkippedTo();
+                }
+            }
+        }
+        return results.toString();
+    }
+
+    private static String withoutOffsets(String results)
+    {
+        return results.replaceAll("skipped [0-9]+\\.\\.[0-9]+", "skipped");
+    }
+}
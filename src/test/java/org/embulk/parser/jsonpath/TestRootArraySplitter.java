@@ -0,0 +1,92 @@
+package org.embulk.parser.jsonpath;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.embulk.parser.jsonpath.ParserMetrics.SkipReason;
+import org.embulk.spi.DataException;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+
+import static org.junit.Assert.assertEquals;
+
+public class TestRootArraySplitter
+{
+    private static final ObjectMapper OBJECT_MAPPER = new ObjectMapper();
+
+    @Rule
+    public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    @Test
+    public void keepOrderOfChunks()
+            throws IOException
+    {
+        StringBuilder json = new StringBuilder("[");
+        StringBuilder expected = new StringBuilder("[");
+        for (int i = 0; i < 1000; i++) {
+            json.append(i > 0 ? ",\n" : "").append("{\"n\":").append(i).append("}");
+            expected.append(i > 0 ? ", " : "").append("{\"n\":").append(i).append("}");
+        }
+        json.append("]");
+        expected.append("]");
+        assertEquals(expected.toString(), parse(json.toString(), 0, 3, 20));
+    }
+
+    @Test
+    public void followStringsAndNesting()
+            throws IOException
+    {
+        assertEquals("[{\"s\":\"\\\"],\"}, [1,[2,{}]], \"x\\\\\", 3, null]",
+                parse("[{\"s\":\"\\\"],\"}, [1,[2,{}]] ,\"x\\\\\",3,null]", 0, 2, 1));
+        assertEquals("[{\"a\":[1]}]", parse("{\"x\":[2],\"records\":[{\"a\":[1]}],\"y\":[3]}", 19, 2, 1));
+        assertEquals("[]", parse("[ \n ]", 0, 2, 1));
+    }
+
+    @Test
+    public void skipInvalidElements()
+            throws IOException
+    {
+        assertEquals("[{\"a\":1}, skipped 9..22, skipped 23..23, {\"a\":\"x,]\"}, {\"a\":4}]",
+                parse("[{\"a\":1},{\"a\":2 \"b\":3},,{\"a\":\"x,]\"},{\"a\":4}]", 0, 2, 1));
+        assertEquals("[1, skipped 3..3]", parse("[1,]", 0, 2, 1));
+        assertEquals("[1, skipped 3..6]", parse("[1,2 3]", 0, 2, 1));
+    }
+
+    @Test
+    public void skipUnclosedArray()
+            throws IOException
+    {
+        assertEquals("[{\"a\":1}, skipped 9..15]", parse("[{\"a\":1},{\"a\":2", 0, 2, 1));
+        assertEquals("[{\"a\":1}, skipped 9..9]", parse("[{\"a\":1},", 0, 2, 1));
+    }
+
+    private String parse(String json, long arrayStart, int threads, long chunkBytes)
+            throws IOException
+    {
+        File file = temporaryFolder.newFile();
+        Files.write(file.toPath(), json.getBytes(StandardCharsets.UTF_8));
+        List<String> results = new ArrayList<>();
+        InvalidRecordHandler invalidRecords = new InvalidRecordHandler(false, new ParserMetrics(), Optional.empty()) {
+            @Override
+            public void skipOrThrow(DataException cause, SkipReason reason, InvalidRecord record)
+            {
+                assertEquals(SkipReason.INVALID_JSON, reason);
+                results.add("skipped " + record.getFrom() + ".." + record.getTo());
+            }
+        };
+        try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ);
+                RootArraySplitter splitter = new RootArraySplitter(OBJECT_MAPPER, threads, chunkBytes, new ParserMetrics())) {
+            splitter.parse(channel, arrayStart, record -> results.add(record.toString()), invalidRecords);
+        }
+        return results.toString();
+    }
+}
@@ -0,0 +1,97 @@
+package org.embulk.parser.jsonpath;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.Test;
+
+import java.io.IOException;
+
+import java.util.List;
+import java.util.Optional;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class TestSimpleJsonPath
+{
+    @Test
+    public void parseRoot()
+    {
+        SimpleJsonPath path = SimpleJsonPath.parse("$").get();
+        assertEquals(0, path.getSegments().size());
+        assertFalse(path.hasWildcard());
+    }
+
+    @Test
+    public void parseNamesAndIndexes()
+    {
+        List<SimpleJsonPath.Segment> segments = SimpleJsonPath.parse("$.a['b c'][2].d").get().getSegments();
+        assertEquals(4, segments.size());
+        assertEquals("a", segments.get(0).getName());
+        assertEquals("b c", segments.get(1).getName());
+        assertFalse(segments.get(2).isName());
+        assertEquals(2, segments.get(2).getIndex());
+        assertEquals("d", segments.get(3).getName());
+    }
+
+    @Test
+    public void parseWithoutDollar()
+    {
+        List<SimpleJsonPath.Segment> segments = SimpleJsonPath.parse("names[0]").get().getSegments();
+        assertEquals(2, segments.size());
+        assertEquals("names", segments.get(0).getName());
+        assertEquals(0, segments.get(1).getIndex());
+    }
+
+    @Test
+    public void parseTrailingWildcard()
+    {
+        assertTrue(SimpleJsonPath.parse("$.data[*]").get().hasWildcard());
+        assertTrue(SimpleJsonPath.parse("$.data.*").get().hasWildcard());
+        assertFalse(SimpleJsonPath.parse("$.data[*].id").isPresent());
+    }
+
+    @Test
+    public void streamable()
+    {
+        assertTrue(SimpleJsonPath.parse("$.data[0]").get().isStreamable());
+        assertFalse(SimpleJsonPath.parse("$.data[-1]").get().isStreamable());
+    }
+
+    @Test
+    public void rejectComplexPaths()
+    {
+        for (String path : new String[] {"$..a", "$.a[?(@.b)]", "$.a[0,1]", "$.a[0:2]", "$.a.length()", "@.a", "$.", "$['a\\'b']"}) {
+            Optional<SimpleJsonPath> parsed = SimpleJsonPath.parse(path);
+            assertFalse(path, parsed.isPresent());
+        }
+    }
+
+    @Test
+    public void evaluate()
+            throws IOException
+    {
+        JsonNode json = new ObjectMapper().readTree("{\"user\":{\"address\":{\"city\":\"Tokyo\"}},\"items\":[{\"sku\":\"a\"},{\"sku\":\"b\"}]}");
+        assertEquals("Tokyo", SimpleJsonPath.parse("$.user.address.city").get().evaluate(json).asText());
+        assertEquals("a", SimpleJsonPath.parse("$.items[0].sku").get().evaluate(json).asText());
+        assertEquals("b", SimpleJsonPath.parse("$.items[-1].sku").get().evaluate(json).asText());
+        assertEquals(json, SimpleJsonPath.parse("$").get().evaluate(json));
+        assertEquals("Tokyo", SimpleJsonPath.ofName("user").evaluate(json).get("address").get("city").asText());
+    }
+
+    @Test
+    public void evaluateMissing()
+            throws IOException
+    {
+        JsonNode json = new ObjectMapper().readTree("{\"user\":{\"name\":null},\"items\":[{\"sku\":\"a\"}]}");
+        assertNull(SimpleJsonPath.parse("$.user.address.city").get().evaluate(json));
+        assertNull(SimpleJsonPath.parse("$.user.name.first").get().evaluate(json));
+        assertNull(SimpleJsonPath.parse("$.items[1].sku").get().evaluate(json));
+        assertNull(SimpleJsonPath.parse("$.items[-2]").get().evaluate(json));
+        assertNull(SimpleJsonPath.parse("$.user[0]").get().evaluate(json));
+        assertNull(SimpleJsonPath.parse("$.items.sku").get().evaluate(json));
+        assertNull(SimpleJsonPath.ofName("user.name").evaluate(json));
+    }
+}
@@ -0,0 +1,69 @@
+package org.embulk.parser.jsonpath;
+
+import org.embulk.spi.Column;
+import org.embulk.spi.DataException;
+import org.embulk.util.timestamp.TimestampFormatter;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.time.Instant;
+
+import static org.embulk.spi.type.Types.TIMESTAMP;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertThrows;
+
+public class TestTimestampCache
+{
+    private TimestampColumnParser parser;
+
+    @SuppressWarnings("deprecation")
+    @Before
+    public void createParser()
+    {
+        parser = TimestampColumnParser.of(TimestampFormatter.builder("%Y-%m-%d %H:%M:%S", true)
+                .setDefaultZoneFromString("UTC")
+                .setDefaultDateFromString("1970-01-01")
+                .build());
+    }
+
+    @Test
+    public void parseRepeatedValues()
+    {
+        TimestampCache cache = new TimestampCache(new Column(0, "c", TIMESTAMP), parser, 2);
+
+        assertEquals(Instant.ofEpochSecond(1451606400L), cache.parse("2016-01-01 00:00:00"));
+        assertEquals(Instant.ofEpochSecond(1451606400L), cache.parse("2016-01-01 00:00:00"));
+        assertEquals(Instant.ofEpochSecond(1451606401L), cache.parse("2016-01-01 00:00:01"));
+        assertEquals(Instant.ofEpochSecond(1451606400L), cache.parse("2016-01-01 00:00:00"));
+        assertEquals(2, cache.getHits());
+        assertEquals(2, cache.getMisses());
+    }
+
+    @Test
+    public void evictLeastRecentlyUsed()
+    {
+        TimestampCache cache = new TimestampCache(new Column(0, "c", TIMESTAMP), parser, 2);
+
+        cache.parse("2016-01-01 00:00:00");
+        cache.parse("2016-01-01 00:00:01");
+        cache.parse("2016-01-01 00:00:00");
+        cache.parse("2016-01-01 00:00:02");  // evicts 00:00:01
+        cache.parse("2016-01-01 00:00:00");
+        assertEquals(2, cache.getHits());
+
+        cache.parse("2016-01-01 00:00:01");
+        assertEquals(2, cache.getHits());
+        assertEquals(4, cache.getMisses());
+    }
+
+    @Test
+    public void throwOnInvalidValue()
+    {
+        TimestampCache cache = new TimestampCache(new Column(0, "c", TIMESTAMP), parser, 2);
+
+        assertThrows(DataException.class, () -> cache.parse("INVALID"));
+        assertThrows(DataException.class, () -> cache.parse("INVALID"));
+        assertEquals(0, cache.getHits());
+        assertEquals(2, cache.getMisses());
+    }
+}
@@ -0,0 +1,111 @@
+package org.embulk.parser.jsonpath.cast;
+
+import org.junit.Test;
+
+import java.math.BigDecimal;
+import java.math.MathContext;
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+
+public class TestFastDoubleParser
+{
+    private static final int ITERATIONS = 1000000;
+
+    @Test
+    public void parseSpecialCases()
+    {
+        String[] values = {
+            "0", "-0", "+0", "0.0", "-0.0", "0e999999", "1", "-1", "1.", ".5", "-.5", "1.e5", "0.1", "1e23", "8.41e21",
+            "9007199254740992", "9007199254740993", "9007199254740992.5", "9999999999999999999", "18446744073709551615",
+            "99999999999999999999e-20", "0.000000000000000000000000000000000000001234567890123456789012345",
+            "1.7976931348623157e308", "1.7976931348623158e308", "1.7976931348623159e308", "1e400", "-1e400",
+            "2.2250738585072012e-308", "2.2250738585072011e-308", "4.9e-324", "2.4703282292062328e-324",
+            "2.4703282292062327e-324", "1e-325", "1e-400",
+            "NaN", "-Infinity", "0x1p3", "1d", "1f", " 1", "1 ", "", " ", ".", "-", "+", "e5", "1e", "1e+", "1.2.3", "1e5.5", "--1", "foo",
+        };
+        for (String value : values) {
+            assertSameAsJdk(value);
+        }
+    }
+
+    @Test
+    public void parseShortestRepresentations()
+    {
+        Random random = new Random(1);
+        for (int i = 0; i < ITERATIONS; i++) {
+            assertSameAsJdk(Double.toString(Double.longBitsToDouble(random.nextLong())));
+        }
+    }
+
+    @Test
+    public void parseExactAndHalfwayValues()
+    {
+        Random random = new Random(2);
+        for (int i = 0; i < ITERATIONS / 10; i++) {
+            double value = Double.longBitsToDouble(random.nextLong() & 0x7FEFFFFFFFFFFFFFL);
+            BigDecimal exact = new BigDecimal(value);
+            BigDecimal halfway = exact.add(new BigDecimal(Math.nextUp(value))).divide(BigDecimal.valueOf(2));
+            assertSameAsJdk(exact.toString());
+            assertSameAsJdk(halfway.toString());
+            assertSameAsJdk(halfway.round(new MathContext(17 + random.nextInt(4))).toString());
+        }
+    }
+
+    @Test
+    public void parseRandomDecimals()
+    {
+        Random random = new Random(3);
+        for (int i = 0; i < ITERATIONS; i++) {
+            StringBuilder value = new StringBuilder();
+            if (random.nextBoolean()) {
+                value.append('-');
+            }
+            int digits = 1 + random.nextInt(25);
+            for (int j = 0; j < digits; j++) {
+                value.append((char) ('0' + random.nextInt(10)));
+            }
+            if (random.nextBoolean()) {
+                value.insert(value.length() - random.nextInt(digits + 1), '.');
+            }
+            if (random.nextBoolean()) {
+                value.append(random.nextBoolean() ? 'e' : 'E').append(random.nextInt(700) - 350);
+            }
+            assertSameAsJdk(value.toString());
+        }
+    }
+
+    @Test
+    public void parseRandomStrings()
+    {
+        Random random = new Random(4);
+        String characters = "0123456789.eE+-dfxIN ";
+        for (int i = 0; i < ITERATIONS / 10; i++) {
+            StringBuilder value = new StringBuilder();
+            int length = random.nextInt(8);
+            for (int j = 0; j < length; j++) {
+                value.append(characters.charAt(random.nextInt(characters.length())));
+            }
+            assertSameAsJdk(value.toString());
+        }
+    }
+
+    private static void assertSameAsJdk(String value)
+    {
+        String expected;
+        try {
+            expected = Long.toHexString(Double.doubleToRawLongBits(Double.parseDouble(value)));
+        }
+        catch (NumberFormatException e) {
+            expected = e.getMessage();
+        }
+        String actual;
+        try {
+            actual = Long.toHexString(Double.doubleToRawLongBits(FastDoubleParser.parseDouble(new StringBuilder(value))));
+        }
+        catch (NumberFormatException e) {
+            actual = e.getMessage();
+        }
+        assertEquals(value, expected, actual);
+    }
+}
@@ -55,6 +55,64 @@ public class TestStringCast
         }
     }
 
+    @Test
+    public void asBooleanOfCharSequence()
+    {
+        for (String str : StringCast.TRUE_STRINGS) {
+            assertEquals(true, StringCast.asBoolean(new StringBuilder(str)));
+            char[] buffer = ("[" + str + "]").toCharArray();
+            assertEquals(true, StringCast.asBoolean(buffer, 1, str.length()));
+        }
+        for (String str : StringCast.FALSE_STRINGS) {
+            assertEquals(false, StringCast.asBoolean(new StringBuilder(str)));
+            char[] buffer = ("[" + str + "]").toCharArray();
+            assertEquals(false, StringCast.asBoolean(buffer, 1, str.length()));
+        }
+        try {
+            StringCast.asBoolean("xtRuex".toCharArray(), 1, 4);
+            fail();
+        }
+        catch (DataException e) {
+            assertEquals("cannot cast String to boolean: \"tRue\"", e.getMessage());
+        }
+    }
+
+    @Test
+    public void asLongOfCharSequence()
+    {
+        String[] values = {"0", "1", "-1", "+1", "0012", "-9223372036854775808", "9223372036854775807",
+            "\u0661\u0662", "9223372036854775808", "-9223372036854775809", "", "-", "+", "1.5", "1e3", " 1", "foo"};
+        for (String value : values) {
+            char[] buffer = ("  " + value + "  ").toCharArray();
+            Long expected;
+            try {
+                expected = StringCast.asLong(value);
+            }
+            catch (DataException e) {
+                expected = null;
+                try {
+                    StringCast.asLong(new StringBuilder(value));
+                    fail(value);
+                }
+                catch (DataException actual) {
+                    assertEquals(e.getMessage(), actual.getMessage());
+                    assertEquals(e.getCause().getMessage(), actual.getCause().getMessage());
+                }
+                try {
+                    StringCast.asLong(buffer, 2, value.length());
+                    fail(value);
+                }
+                catch (DataException actual) {
+                    assertEquals(e.getMessage(), actual.getMessage());
+                }
+            }
+            if (expected != null) {
+                assertEquals(value, (long) expected, StringCast.asLong(new StringBuilder(value)));
+                assertEquals(value, (long) expected, StringCast.asLong(buffer, 2, value.length()));
+            }
+        }
+    }
+
     @Test
     public void asDouble()
     {
@@ -69,6 +127,20 @@ public class TestStringCast
         }
     }
 
+    @Test
+    public void asDoubleOfCharSequence()
+    {
+        assertEquals(1.5, StringCast.asDouble(new StringBuilder("1.5")), 0.0);
+        assertEquals(-0.001, StringCast.asDouble("[-1e-3]".toCharArray(), 1, 5), 0.0);
+        try {
+            StringCast.asDouble("x1.5.x".toCharArray(), 1, 4);
+            fail();
+        }
+        catch (DataException e) {
+            assertEquals("cannot cast String to double: \"1.5.\"", e.getMessage());
+        }
+    }
+
     @Test
     public void asString()
     {